@@ -1,10 +1,24 @@
 package org.example;
 
+import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ConfigurableApplicationContext;
 
 @SpringBootApplication
 public class Main {
+
+    /**
+     * 第一个参数为loadgen时以压测模式启动，压测结束后退出
+     */
+    private static final String LOADGEN = "loadgen";
+
     public static void main(String[] args) {
-        System.out.println("Hello world!");
+        if (args.length > 0 && LOADGEN.equals(args[0])) {
+            args[0] = "--fdfs.loadgen.enabled=true";
+        }
+        ConfigurableApplicationContext context = SpringApplication.run(Main.class, args);
+        if (context.getEnvironment().getProperty("fdfs.loadgen.enabled", Boolean.class, false)) {
+            System.exit(SpringApplication.exit(context));
+        }
     }
-}
\ No newline at end of file
+}
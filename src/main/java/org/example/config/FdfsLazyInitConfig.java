@@ -0,0 +1,108 @@
+package org.example.config;
+
+import com.github.tobato.fastdfs.domain.conn.FdfsConnectionPool;
+import com.github.tobato.fastdfs.service.FastFileStorageClient;
+import com.github.tobato.fastdfs.service.TrackerClient;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * FastDFS客户端延迟初始化
+ * <p>
+ * fdfs.lazy-init=true 时客户端、连接池以及依赖它们的工具类和服务都在首次使用时才创建，
+ * 启动阶段不再解析tracker地址；fdfs.warm-up=true 时在启动完成后由后台线程提前创建并连接tracker。
+ * 在{@link TrafficLaneConfig}替换连接管理器的类名之后执行，并且替换后的类同样延迟创建。
+ * <p>
+ * 没有使用spring.main.lazy-initialization，它对所有bean生效，这里只延迟FastDFS相关的bean。
+ *
+ * @author Kent HAN
+ * @date 2026/10/19
+ */
+@Slf4j
+@Component
+public class FdfsLazyInitConfig implements BeanFactoryPostProcessor, EnvironmentAware, ApplicationListener<ApplicationReadyEvent>, Ordered {
+
+    private static final String[] LAZY_PACKAGES = {
+            "com.github.tobato.fastdfs.",
+            "org.example.util.",
+            "org.example.service.",
+            LaneConnectionManager.class.getName()
+    };
+
+    static final int ORDER = TrafficLaneConfig.ORDER + 1;
+
+    /**
+     * 连接池会被MBeanExporter自动探测，延迟后会被替换成CGLIB代理，因此保持立即创建，它本身不建立连接
+     */
+    private static final String POOL_CLASS = FdfsConnectionPool.class.getName();
+
+    private Environment environment;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.environment = environment;
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    @Override
+    public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) throws BeansException {
+        if (!environment.getProperty("fdfs.lazy-init", Boolean.class, false)) {
+            return;
+        }
+        int count = 0;
+        for (String name : beanFactory.getBeanDefinitionNames()) {
+            BeanDefinition definition = beanFactory.getBeanDefinition(name);
+            String className = definition.getBeanClassName();
+            if (className != null && !POOL_CLASS.equals(className) && isLazyPackage(className)) {
+                definition.setLazyInit(true);
+                count++;
+            }
+        }
+        log.info("fdfs lazy init enabled, {} beans deferred", count);
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        if (!environment.getProperty("fdfs.lazy-init", Boolean.class, false)
+                || !environment.getProperty("fdfs.warm-up", Boolean.class, false)) {
+            return;
+        }
+        String groupName = environment.getProperty("fdfs.groupName");
+        Thread thread = new Thread(() -> {
+            long start = System.nanoTime();
+            try {
+                event.getApplicationContext().getBean(FastFileStorageClient.class);
+                if (groupName != null) {
+                    event.getApplicationContext().getBean(TrackerClient.class).getStoreStorage(groupName);
+                }
+                log.info("fdfs warm-up finished in {} ms", (System.nanoTime() - start) / 1_000_000);
+            } catch (Exception e) {
+                log.error("fdfs warm-up error:{}", e.getMessage());
+            }
+        }, "fdfs-warm-up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static boolean isLazyPackage(String className) {
+        for (String prefix : LAZY_PACKAGES) {
+            if (className.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,47 @@
+package org.example.config;
+
+import com.github.tobato.fastdfs.domain.conn.Connection;
+import com.github.tobato.fastdfs.domain.conn.FdfsConnectionManager;
+import com.github.tobato.fastdfs.domain.proto.FdfsCommand;
+import org.example.jfr.FdfsJfr;
+import org.example.util.BandwidthShaper;
+import org.example.util.LaneGate;
+import org.example.util.TrafficLane;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.net.InetSocketAddress;
+
+/**
+ * 按流量类型借连接的storage连接管理
+ * <p>
+ * 替换客户端自带的fdfsConnectionManager，所有storage命令先经过{@link LaneGate}获取名额，再从连接池借连接。
+ * 执行批量命令期间记录当前storage节点，供{@link BandwidthShaper}按节点限速。
+ *
+ * @author Kent HAN
+ * @date 2026/10/19
+ */
+public class LaneConnectionManager extends FdfsConnectionManager {
+
+    @Autowired
+    private LaneGate laneGate;
+
+    @Override
+    public <T> T executeFdfsCmd(InetSocketAddress address, FdfsCommand<T> command) {
+        TrafficLane lane = TrafficLane.current();
+        long laneWait = laneGate.acquire(lane, address);
+        try {
+            long start = System.nanoTime();
+            Connection connection = getConnection(address);
+            long poolWait = System.nanoTime() - start;
+            laneGate.recordPoolWait(lane, poolWait);
+            FdfsJfr.onCommand(address, laneWait + poolWait);
+            if (lane == TrafficLane.BULK) {
+                BandwidthShaper.setCurrentNode(address);
+            }
+            return execute(address, connection, command);
+        } finally {
+            BandwidthShaper.setCurrentNode(null);
+            laneGate.release(lane, address);
+        }
+    }
+}
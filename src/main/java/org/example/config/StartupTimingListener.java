@@ -0,0 +1,123 @@
+package org.example.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.InstantiationAwareBeanPostProcessor;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.SpringApplicationRunListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.ConfigurableEnvironment;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 启动耗时报告
+ * <p>
+ * 按SpringApplication的各个阶段记录耗时，并统计创建最慢的bean，启动完成后输出到日志。
+ * 通过META-INF/spring.factories注册，fdfs.startup-report=false 可关闭输出。
+ *
+ * @author Kent HAN
+ * @date 2026/10/19
+ */
+@Slf4j
+public class StartupTimingListener implements SpringApplicationRunListener {
+
+    private static final int TOP_BEANS = 10;
+
+    private final long startNanos = System.nanoTime();
+
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+
+    private final Map<String, Long> beanStarts = new ConcurrentHashMap<>();
+
+    private final Map<String, Long> beanCosts = new ConcurrentHashMap<>();
+
+    private long lastNanos = startNanos;
+
+    public StartupTimingListener(SpringApplication application, String[] args) {
+    }
+
+    @Override
+    public void starting() {
+        mark("starting");
+    }
+
+    @Override
+    public void environmentPrepared(ConfigurableEnvironment environment) {
+        mark("environmentPrepared");
+    }
+
+    @Override
+    public void contextPrepared(ConfigurableApplicationContext context) {
+        mark("contextPrepared");
+        context.getBeanFactory().addBeanPostProcessor(new BeanTimer());
+    }
+
+    @Override
+    public void contextLoaded(ConfigurableApplicationContext context) {
+        mark("contextLoaded");
+    }
+
+    @Override
+    public void started(ConfigurableApplicationContext context) {
+        mark("refreshed");
+    }
+
+    @Override
+    public void running(ConfigurableApplicationContext context) {
+        mark("running");
+        if (context.getEnvironment().getProperty("fdfs.startup-report", Boolean.class, true)) {
+            log.info(report());
+        }
+    }
+
+    @Override
+    public void failed(ConfigurableApplicationContext context, Throwable exception) {
+        mark("failed");
+        log.info(report());
+    }
+
+    private synchronized void mark(String phase) {
+        long now = System.nanoTime();
+        phases.put(phase, now - lastNanos);
+        lastNanos = now;
+    }
+
+    private synchronized String report() {
+        long jvmToMain = System.currentTimeMillis() - (System.nanoTime() - startNanos) / 1_000_000
+                - ManagementFactory.getRuntimeMXBean().getStartTime();
+        StringBuilder sb = new StringBuilder("startup timing report\n");
+        sb.append(String.format("  %-22s %6d ms%n", "jvm->application", jvmToMain));
+        for (Map.Entry<String, Long> e : phases.entrySet()) {
+            sb.append(String.format("  %-22s %6d ms%n", e.getKey(), e.getValue() / 1_000_000));
+        }
+        sb.append(String.format("  %-22s %6d ms%n", "time-to-ready", jvmToMain + (lastNanos - startNanos) / 1_000_000));
+        List<Map.Entry<String, Long>> beans = new ArrayList<>(beanCosts.entrySet());
+        beans.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        sb.append("  slowest beans (including dependencies):\n");
+        for (Map.Entry<String, Long> e : beans.subList(0, Math.min(TOP_BEANS, beans.size()))) {
+            sb.append(String.format("    %-40s %6.1f ms%n", e.getKey(), e.getValue() / 1_000_000.0));
+        }
+        return sb.toString();
+    }
+
+    private class BeanTimer implements InstantiationAwareBeanPostProcessor {
+
+        @Override
+        public Object postProcessBeforeInstantiation(Class<?> beanClass, String beanName) throws BeansException {
+            beanStarts.put(beanName, System.nanoTime());
+            return null;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+            Long start = beanStarts.remove(beanName);
+            if (start != null) {
+                beanCosts.put(beanName, System.nanoTime() - start);
+            }
+            return bean;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.example.config;
+
+import com.github.tobato.fastdfs.domain.conn.FdfsConnectionManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * 启用交互/批量连接通道
+ * <p>
+ * fdfs.lanes.enabled=true(默认)时把客户端的fdfsConnectionManager换成{@link LaneConnectionManager}，
+ * 客户端内部的storage调用都会经过通道分配，调用方只需要用TrafficLane标记批量任务。
+ * 需要先于{@link FdfsLazyInitConfig}执行，保证按替换后的类名判断是否延迟创建。
+ *
+ * @author Kent HAN
+ * @date 2026/10/19
+ */
+@Slf4j
+@Component
+public class TrafficLaneConfig implements BeanFactoryPostProcessor, EnvironmentAware, Ordered {
+
+    static final int ORDER = Ordered.HIGHEST_PRECEDENCE;
+
+    private static final String CONNECTION_MANAGER = "fdfsConnectionManager";
+
+    private Environment environment;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.environment = environment;
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    @Override
+    public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) throws BeansException {
+        if (!environment.getProperty("fdfs.lanes.enabled", Boolean.class, true)
+                || !beanFactory.containsBeanDefinition(CONNECTION_MANAGER)) {
+            return;
+        }
+        BeanDefinition definition = beanFactory.getBeanDefinition(CONNECTION_MANAGER);
+        if (FdfsConnectionManager.class.getName().equals(definition.getBeanClassName())) {
+            definition.setBeanClassName(LaneConnectionManager.class.getName());
+            log.info("fdfs traffic lanes enabled");
+        }
+    }
+}
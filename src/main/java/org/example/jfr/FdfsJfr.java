@@ -0,0 +1,92 @@
+package org.example.jfr;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+
+/**
+ * 创建和提交JFR事件
+ * <p>
+ * 事件默认关闭，关闭时只有一次isEnabled判断，不设置字段也不记录线程变量，开销可以忽略。
+ * 用jfr/fdfs.jfc或fdfs.jfr.enabled开启，需要JDK 8u262及以上；没有jdk.jfr时所有方法直接返回，
+ * 事件类只在{@link JfrEvents}中使用，本类和调用方都不会加载它们。
+ * storage节点和连接等待时间由LaneConnectionManager写入当前线程正在进行的操作事件，未启用连接通道时为空。
+ *
+ * @author Kent HAN
+ * @date 2026/10/19
+ */
+public final class FdfsJfr {
+
+    private static final boolean AVAILABLE = isAvailable();
+
+    private FdfsJfr() {
+    }
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, FdfsJfr.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * 开始一个FastDFS操作，同一线程嵌套的操作不再接收节点和等待时间
+     */
+    public static JfrSpan begin(String operation, String group, String path) {
+        return AVAILABLE ? JfrEvents.begin(operation, group, path) : JfrSpan.NONE;
+    }
+
+    public static void end(JfrSpan span, long bytes, boolean success) {
+        end(span, null, bytes, success);
+    }
+
+    /**
+     * 结束操作，同时记录上传后得到的远程路径，不含group
+     */
+    public static void end(JfrSpan span, String path, long bytes, boolean success) {
+        if (span.event != null) {
+            JfrEvents.end(span, path, bytes, success);
+        }
+    }
+
+    /**
+     * 结束操作，字节数取本地文件大小
+     */
+    public static void end(JfrSpan span, File sizeOf, boolean success) {
+        if (span.event != null) {
+            JfrEvents.end(span, null, success ? sizeOf.length() : 0, success);
+        }
+    }
+
+    /**
+     * 当前线程的操作执行了一次storage命令
+     *
+     * @param address   storage地址
+     * @param waitNanos 等待连接的纳秒数
+     */
+    public static void onCommand(InetSocketAddress address, long waitNanos) {
+        if (AVAILABLE) {
+            JfrEvents.onCommand(address, waitNanos);
+        }
+    }
+
+    public static JfrSpan beginFile(String operation, String path, String target) {
+        return AVAILABLE ? JfrEvents.beginFile(operation, path, target) : JfrSpan.NONE;
+    }
+
+    public static void endFile(JfrSpan span, long bytes, int files) {
+        if (span.event != null) {
+            JfrEvents.endFile(span, bytes, files);
+        }
+    }
+
+    /**
+     * 结束文件操作，字节数取文件大小
+     */
+    public static void endFile(JfrSpan span, File sizeOf) {
+        if (span.event != null) {
+            JfrEvents.endFile(span, sizeOf.length(), 1);
+        }
+    }
+}
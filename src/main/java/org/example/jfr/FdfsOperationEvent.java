@@ -0,0 +1,45 @@
+package org.example.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * FastDFS操作事件
+ *
+ * @author Kent HAN
+ * @date 2026/10/19
+ */
+@Name("org.example.FdfsOperation")
+@Label("FastDFS Operation")
+@Description("FastDfsUtils上传、下载、查询、删除操作")
+@Category({"FastDFS"})
+@Enabled(false)
+@StackTrace(false)
+public class FdfsOperationEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Group")
+    String group;
+
+    @Label("Path")
+    String path;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Storage Node")
+    String node;
+
+    @Label("Pool Wait")
+    @Description("等待连接通道名额和从连接池借连接的总耗时")
+    @Timespan(Timespan.NANOSECONDS)
+    long poolWait;
+
+    @Label("Lane")
+    String lane;
+
+    @Label("Success")
+    boolean success;
+}
@@ -0,0 +1,34 @@
+package org.example.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * 本地文件操作事件
+ *
+ * @author Kent HAN
+ * @date 2026/10/19
+ */
+@Name("org.example.FileIo")
+@Label("File I/O")
+@Description("FileUtil复制、读取、列目录操作")
+@Category({"FastDFS", "Local File"})
+@Enabled(false)
+@StackTrace(false)
+public class FileIoEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Path")
+    String path;
+
+    @Label("Target")
+    String target;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Files")
+    int files;
+}
@@ -0,0 +1,88 @@
+package org.example.jfr;
+
+import org.example.util.TrafficLane;
+
+import java.net.InetSocketAddress;
+
+/**
+ * 创建和提交JFR事件，只由{@link FdfsJfr}在确认JFR可用后调用
+ *
+ * @author Kent HAN
+ * @date 2026/10/19
+ */
+final class JfrEvents {
+
+    private static final ThreadLocal<FdfsOperationEvent> CURRENT = new ThreadLocal<>();
+
+    private JfrEvents() {
+    }
+
+    static JfrSpan begin(String operation, String group, String path) {
+        FdfsOperationEvent event = new FdfsOperationEvent();
+        if (!event.isEnabled()) {
+            return JfrSpan.NONE;
+        }
+        event.operation = operation;
+        event.group = group;
+        event.path = path;
+        event.lane = TrafficLane.current().name();
+        if (CURRENT.get() == null) {
+            CURRENT.set(event);
+        }
+        event.begin();
+        return new JfrSpan(event);
+    }
+
+    static void end(JfrSpan span, String path, long bytes, boolean success) {
+        FdfsOperationEvent event = (FdfsOperationEvent) span.event;
+        // 开始后记录可能已经停止，isEnabled变为false，线程变量仍要清除
+        if (CURRENT.get() == event) {
+            CURRENT.remove();
+        }
+        if (!event.isEnabled()) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            if (path != null) {
+                event.path = path;
+            }
+            event.bytes = bytes;
+            event.success = success;
+            event.commit();
+        }
+    }
+
+    static void onCommand(InetSocketAddress address, long waitNanos) {
+        FdfsOperationEvent event = CURRENT.get();
+        if (event != null) {
+            event.node = address.getHostString() + ":" + address.getPort();
+            event.poolWait += waitNanos;
+        }
+    }
+
+    static JfrSpan beginFile(String operation, String path, String target) {
+        FileIoEvent event = new FileIoEvent();
+        if (!event.isEnabled()) {
+            return JfrSpan.NONE;
+        }
+        event.operation = operation;
+        event.path = path;
+        event.target = target;
+        event.begin();
+        return new JfrSpan(event);
+    }
+
+    static void endFile(JfrSpan span, long bytes, int files) {
+        FileIoEvent event = (FileIoEvent) span.event;
+        if (!event.isEnabled()) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.bytes = bytes;
+            event.files = files;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.example.jfr;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 启动持续的JFR记录
+ * <p>
+ * fdfs.jfr.enabled=true 时使用JDK的default配置加上jfr/fdfs.jfc开始记录，只保留最近maxAgeMinutes分钟，
+ * 设置dumpPath时退出前写入该文件，也可以随时用 jcmd <pid> JFR.dump name=fdfs 导出。没有jdk.jfr时不加载。
+ *
+ * @author Kent HAN
+ * @date 2026/10/19
+ */
+@Slf4j
+@Component
+@ConditionalOnClass(name = "jdk.jfr.Recording")
+@ConditionalOnProperty(value = "fdfs.jfr.enabled", havingValue = "true")
+public class JfrRecordingConfig {
+
+    private static final String SETTINGS = "/jfr/fdfs.jfc";
+
+    @Value("${fdfs.jfr.maxAgeMinutes:30}")
+    private long maxAgeMinutes;
+
+    @Value("${fdfs.jfr.dumpPath:}")
+    private String dumpPath;
+
+    private Recording recording;
+
+    @PostConstruct
+    public void start() throws Exception {
+        Map<String, String> settings = new HashMap<>(Configuration.getConfiguration("default").getSettings());
+        try (Reader reader = new InputStreamReader(getClass().getResourceAsStream(SETTINGS), StandardCharsets.UTF_8)) {
+            settings.putAll(Configuration.create(reader).getSettings());
+        }
+        recording = new Recording(settings);
+        recording.setName("fdfs");
+        recording.setToDisk(true);
+        recording.setMaxAge(Duration.ofMinutes(maxAgeMinutes));
+        if (!dumpPath.isEmpty()) {
+            recording.setDestination(Paths.get(dumpPath));
+        }
+        recording.start();
+        log.info("jfr recording started, maxAge {} min, dump to {}", maxAgeMinutes, dumpPath.isEmpty() ? "-" : dumpPath);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (recording != null) {
+            // 设置了destination时stop会写入文件
+            recording.stop();
+            recording.close();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package org.example.jfr;
+
+/**
+ * 进行中的JFR事件
+ * <p>
+ * 只持有事件对象，本身不引用jdk.jfr，调用方在没有JFR的JDK上也能正常加载。事件未开启时为{@link #NONE}。
+ *
+ * @author Kent HAN
+ * @date 2026/10/19
+ */
+public final class JfrSpan {
+
+    static final JfrSpan NONE = new JfrSpan(null);
+
+    final Object event;
+
+    JfrSpan(Object event) {
+        this.event = event;
+    }
+}
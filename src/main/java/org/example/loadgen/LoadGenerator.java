@@ -0,0 +1,504 @@
+package org.example.loadgen;
+
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.example.util.FastDfsUtils;
+import org.example.util.ReadEngine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 压测模式，通过FastDfsUtils按比例执行上传、下载、区间读取、存在判断和删除
+ * <p>
+ * rate大于0时为开环压测：按固定间隔计算每个操作的计划开始时间，不等待前一个操作完成，
+ * 响应时间从计划开始时间算起，服务端变慢时排队的时间也计入，避免协调遗漏(coordinated omission)。
+ * rate为0时为闭环压测，concurrency个线程连续执行，用于测最大吞吐。
+ * <p>
+ * 启动方式：{@code java -jar fastdfs-demo.jar loadgen --fdfs.loadgen.rate=500 --fdfs.loadgen.durationSeconds=120}
+ *
+ * @author Kent HAN
+ * @date 2026/10/19
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(value = "fdfs.loadgen.enabled", havingValue = "true")
+public class LoadGenerator implements ApplicationRunner {
+
+    private static final String REMOTE_NAME = "loadgen.bin";
+
+    @Autowired
+    private FastDfsUtils fastDfsUtils;
+
+    /**
+     * 操作比例
+     */
+    @Value("${fdfs.loadgen.mix:upload=20,download=40,range=20,exists=15,delete=5}")
+    private String mix;
+
+    /**
+     * 上传文件大小分布，见{@link SizeDistribution}
+     */
+    @Value("${fdfs.loadgen.size:mix:4k=60,256k=30,8m=10}")
+    private String size;
+
+    @Value("${fdfs.loadgen.concurrency:32}")
+    private int concurrency;
+
+    /**
+     * 每秒发起的操作数，0为闭环压测
+     */
+    @Value("${fdfs.loadgen.rate:200}")
+    private double rate;
+
+    @Value("${fdfs.loadgen.durationSeconds:60}")
+    private int durationSeconds;
+
+    /**
+     * 压测前预先上传的文件数，供下载、读取和删除使用
+     */
+    @Value("${fdfs.loadgen.prefill:50}")
+    private int prefill;
+
+    @Value("${fdfs.loadgen.rangeSize:65536}")
+    private long rangeSize;
+
+    @Value("${fdfs.loadgen.reportSeconds:10}")
+    private int reportSeconds;
+
+    /**
+     * 导出hgrm文件的目录，为空不导出
+     */
+    @Value("${fdfs.loadgen.output:}")
+    private String output;
+
+    /**
+     * 结束后删除压测上传的文件
+     */
+    @Value("${fdfs.loadgen.cleanup:true}")
+    private boolean cleanup;
+
+    @Value("${fdfs.loadgen.workDir:${java.io.tmpdir}/fdfs-loadgen}")
+    private String workDir;
+
+    private final ObjectPool objects = new ObjectPool();
+
+    private final Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+
+    private final AtomicInteger backlog = new AtomicInteger();
+
+    private final AtomicInteger maxBacklog = new AtomicInteger();
+
+    private SizeDistribution sizes;
+
+    private byte[] block;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        Operation.Mix operations = Operation.Mix.parse(mix);
+        sizes = SizeDistribution.parse(size);
+        block = new byte[1 << 20];
+        new Random().nextBytes(block);
+        for (Operation op : Operation.values()) {
+            stats.put(op, new Stats());
+        }
+        new File(workDir).mkdirs();
+
+        log.info("loadgen prefill {} objects", prefill);
+        for (int i = 0; i < prefill; i++) {
+            upload(ThreadLocalRandom.current());
+        }
+
+        log.info("loadgen start: mix={} size={} concurrency={} rate={} duration={}s",
+                mix, size, concurrency, rate > 0 ? rate + "/s" : "closed-loop", durationSeconds);
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "loadgen-report");
+            t.setDaemon(true);
+            return t;
+        });
+        long start = System.nanoTime();
+        reporter.scheduleAtFixedRate(() -> log.info("loadgen {}s: {}",
+                TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start), progress()),
+                reportSeconds, reportSeconds, TimeUnit.SECONDS);
+        try {
+            if (rate > 0) {
+                runOpenLoop(operations, start);
+            } else {
+                runClosedLoop(operations, start);
+            }
+        } finally {
+            reporter.shutdownNow();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        log.info("loadgen finished in {} ms, {}\n{}", TimeUnit.NANOSECONDS.toMillis(elapsed), progress(), report(elapsed));
+        if (!output.isEmpty()) {
+            export(new File(output));
+        }
+        if (cleanup) {
+            cleanup();
+        }
+    }
+
+    private void runOpenLoop(Operation.Mix operations, long start) throws InterruptedException {
+        ThreadPoolExecutor executor = newExecutor();
+        long end = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+        double interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        Random random = new Random();
+        for (long i = 0; ; i++) {
+            long intended = start + (long) (i * interval);
+            if (intended >= end) {
+                break;
+            }
+            long wait;
+            while ((wait = intended - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Operation op = operations.next(random);
+            maxBacklog.accumulateAndGet(backlog.incrementAndGet(), Math::max);
+            executor.execute(() -> {
+                backlog.decrementAndGet();
+                execute(op, intended);
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    private void runClosedLoop(Operation.Mix operations, long start) throws InterruptedException {
+        ThreadPoolExecutor executor = newExecutor();
+        long end = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+        for (int i = 0; i < concurrency; i++) {
+            executor.execute(() -> {
+                Random random = ThreadLocalRandom.current();
+                while (System.nanoTime() < end) {
+                    execute(operations.next(random), System.nanoTime());
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    private ThreadPoolExecutor newExecutor() {
+        AtomicInteger seq = new AtomicInteger();
+        return new ThreadPoolExecutor(concurrency, concurrency, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "loadgen-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * 执行一次操作并记录耗时
+     *
+     * @param intended 计划开始时间，响应时间从此时算起
+     */
+    private void execute(Operation op, long intended) {
+        Stats s = stats.get(op);
+        long begin = System.nanoTime();
+        Boolean ok;
+        try {
+            ok = doExecute(op, ThreadLocalRandom.current());
+        } catch (Exception e) {
+            log.debug("loadgen {} error:{}", op, e.getMessage());
+            ok = false;
+        }
+        if (ok == null) {
+            // 没有可用的文件，不计入统计
+            s.skipped.incrementAndGet();
+            return;
+        }
+        long now = System.nanoTime();
+        s.response.recordValue(TimeUnit.NANOSECONDS.toMicros(now - intended));
+        s.service.recordValue(TimeUnit.NANOSECONDS.toMicros(now - begin));
+        if (!ok) {
+            s.errors.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return 是否成功，没有可操作的文件时返回null
+     */
+    private Boolean doExecute(Operation op, Random random) throws Exception {
+        switch (op) {
+            case UPLOAD:
+                stats.get(op).bytes.addAndGet(upload(random));
+                return true;
+            case DOWNLOAD: {
+                RemoteObject object = objects.lease(random);
+                if (object == null) {
+                    return null;
+                }
+                try {
+                    File local = new File(workDir, Thread.currentThread().getName() + ".bin");
+                    boolean ok = fastDfsUtils.downloadToLocal(local, object.path);
+                    if (ok) {
+                        stats.get(op).bytes.addAndGet(object.size);
+                    }
+                    local.delete();
+                    return ok;
+                } finally {
+                    objects.release(object);
+                }
+            }
+            case RANGE: {
+                RemoteObject object = objects.lease(random);
+                if (object == null) {
+                    return null;
+                }
+                try {
+                    long length = Math.min(rangeSize, object.size);
+                    long offset = (long) (random.nextDouble() * (object.size - length + 1));
+                    byte[] bytes = fastDfsUtils.readRangeToBytes(object.path, offset, length, ReadEngine.STORAGE);
+                    stats.get(op).bytes.addAndGet(bytes.length);
+                    return bytes.length == length;
+                } finally {
+                    objects.release(object);
+                }
+            }
+            case EXISTS: {
+                RemoteObject object = objects.lease(random);
+                if (object == null) {
+                    return null;
+                }
+                try {
+                    return fastDfsUtils.exists(object.path);
+                } finally {
+                    objects.release(object);
+                }
+            }
+            case DELETE: {
+                RemoteObject object = objects.take(random);
+                return object == null ? null : fastDfsUtils.delFile(object.path);
+            }
+            default:
+                throw new IllegalStateException("unknown operation " + op);
+        }
+    }
+
+    private long upload(Random random) throws Exception {
+        long length = sizes.next(random);
+        String path = fastDfsUtils.writeInputStreamToFile(new PayloadInputStream(block, random.nextInt(block.length), length),
+                length, REMOTE_NAME);
+        objects.add(new RemoteObject(path, length));
+        return length;
+    }
+
+    private String progress() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Operation, Stats> e : stats.entrySet()) {
+            long count = e.getValue().response.getTotalCount();
+            if (count > 0) {
+                sb.append(e.getKey().name().toLowerCase()).append(':').append(count)
+                        .append('/').append(e.getValue().errors.get()).append(' ');
+            }
+            if (e.getValue().skipped.get() > 0) {
+                sb.append(e.getKey().name().toLowerCase()).append("-skipped:").append(e.getValue().skipped.get()).append(' ');
+            }
+        }
+        return sb.append("backlog:").append(backlog.get()).append(" max backlog:").append(maxBacklog.get()).toString();
+    }
+
+    /**
+     * 每种操作的次数、错误数、吞吐和响应时间分位数(毫秒)
+     */
+    private String report(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        StringBuilder sb = new StringBuilder(String.format("%-9s %9s %7s %9s %9s %9s %9s %9s %9s %10s %10s%n",
+                "op", "count", "errors", "ops/s", "MB/s", "p50", "p90", "p99", "p99.9", "max", "svc p99"));
+        for (Map.Entry<Operation, Stats> e : stats.entrySet()) {
+            Stats s = e.getValue();
+            Histogram h = s.response;
+            if (h.getTotalCount() == 0) {
+                continue;
+            }
+            sb.append(String.format("%-9s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f %10.2f %10.2f%n",
+                    e.getKey().name().toLowerCase(), h.getTotalCount(), s.errors.get(),
+                    h.getTotalCount() / seconds, s.bytes.get() / 1048576.0 / seconds,
+                    millis(h, 50), millis(h, 90), millis(h, 99), millis(h, 99.9), h.getMaxValue() / 1000.0,
+                    millis(s.service, 99)));
+        }
+        return sb.toString();
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    /**
+     * 每种操作导出响应时间和服务时间两个hgrm文件，单位毫秒，可用HdrHistogram Plotter查看
+     */
+    private void export(File dir) throws Exception {
+        dir.mkdirs();
+        for (Map.Entry<Operation, Stats> e : stats.entrySet()) {
+            if (e.getValue().response.getTotalCount() == 0) {
+                continue;
+            }
+            String name = e.getKey().name().toLowerCase();
+            try (PrintStream out = new PrintStream(new FileOutputStream(new File(dir, name + ".hgrm")))) {
+                e.getValue().response.outputPercentileDistribution(out, 1000.0);
+            }
+            try (PrintStream out = new PrintStream(new FileOutputStream(new File(dir, name + "-service.hgrm")))) {
+                e.getValue().service.outputPercentileDistribution(out, 1000.0);
+            }
+        }
+        log.info("loadgen histograms exported to {}", dir.getAbsolutePath());
+    }
+
+    private void cleanup() {
+        RemoteObject object;
+        int deleted = 0;
+        while ((object = objects.take(ThreadLocalRandom.current())) != null) {
+            try {
+                fastDfsUtils.delFile(object.path);
+                deleted++;
+            } catch (Exception e) {
+                log.warn("loadgen cleanup:{} error:{}", object.path, e.getMessage());
+            }
+        }
+        log.info("loadgen cleanup deleted {} objects", deleted);
+    }
+
+    private static class Stats {
+
+        /**
+         * 从计划开始时间算起，微秒
+         */
+        private final Histogram response = new ConcurrentHistogram(3);
+
+        /**
+         * 从实际开始执行算起，微秒
+         */
+        private final Histogram service = new ConcurrentHistogram(3);
+
+        private final AtomicLong errors = new AtomicLong();
+
+        private final AtomicLong skipped = new AtomicLong();
+
+        private final AtomicLong bytes = new AtomicLong();
+    }
+
+    private static class RemoteObject {
+
+        private final String path;
+
+        private final long size;
+
+        /**
+         * 正在读取的操作数，受ObjectPool锁保护
+         */
+        private int leases;
+
+        private RemoteObject(String path, long size) {
+            this.path = path;
+            this.size = size;
+        }
+    }
+
+    /**
+     * 压测上传的文件，支持随机租用和随机移除
+     * <p>
+     * 读取类操作租用文件，删除只移除没有被租用的文件，读取不会碰到刚被删除的文件而计为错误。
+     */
+    private static class ObjectPool {
+
+        private final List<RemoteObject> objects = new ArrayList<>();
+
+        synchronized void add(RemoteObject object) {
+            objects.add(object);
+        }
+
+        /**
+         * 随机租用一个文件，用完后调用release
+         */
+        synchronized RemoteObject lease(Random random) {
+            if (objects.isEmpty()) {
+                return null;
+            }
+            RemoteObject object = objects.get(random.nextInt(objects.size()));
+            object.leases++;
+            return object;
+        }
+
+        synchronized void release(RemoteObject object) {
+            object.leases--;
+        }
+
+        /**
+         * 从随机位置开始找一个没有被租用的文件移除
+         *
+         * @return 全部被租用或没有文件时返回null
+         */
+        synchronized RemoteObject take(Random random) {
+            int n = objects.size();
+            if (n == 0) {
+                return null;
+            }
+            int start = random.nextInt(n);
+            for (int k = 0; k < n; k++) {
+                int i = (start + k) % n;
+                if (objects.get(i).leases == 0) {
+                    RemoteObject last = objects.remove(n - 1);
+                    return i == n - 1 ? last : objects.set(i, last);
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 从随机数据块循环读出指定长度，上传任意大小的文件不需要分配同样大的内存
+     */
+    private static class PayloadInputStream extends InputStream {
+
+        private final byte[] block;
+
+        private int position;
+
+        private long remaining;
+
+        private PayloadInputStream(byte[] block, int position, long length) {
+            this.block = block;
+            this.position = position;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() {
+            if (remaining <= 0) {
+                return -1;
+            }
+            remaining--;
+            int b = block[position] & 0xFF;
+            position = (position + 1) % block.length;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = (int) Math.min(Math.min(len, remaining), block.length - position);
+            System.arraycopy(block, position, b, off, n);
+            position = (position + n) % block.length;
+            remaining -= n;
+            return n;
+        }
+    }
+}
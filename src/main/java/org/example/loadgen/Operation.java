@@ -0,0 +1,48 @@
+package org.example.loadgen;
+
+import java.util.Random;
+
+/**
+ * 压测操作类型
+ *
+ * @author Kent HAN
+ * @date 2026/10/19
+ */
+public enum Operation {
+
+    UPLOAD, DOWNLOAD, RANGE, EXISTS, DELETE;
+
+    /**
+     * 按权重选择操作
+     */
+    public static class Mix {
+
+        private final Operation[] operations;
+
+        private final double[] cumulative;
+
+        private Mix(Operation[] operations, double[] weights) {
+            this.operations = operations;
+            this.cumulative = SizeDistribution.cumulative(weights);
+        }
+
+        /**
+         * 解析 {@code upload=20,download=40,range=20,exists=15,delete=5}，未出现的操作权重为0
+         */
+        public static Mix parse(String spec) {
+            String[] items = spec.split(",");
+            Operation[] operations = new Operation[items.length];
+            double[] weights = new double[items.length];
+            for (int i = 0; i < items.length; i++) {
+                String[] kv = items[i].split("=");
+                operations[i] = Operation.valueOf(kv[0].trim().toUpperCase());
+                weights[i] = Double.parseDouble(kv[1].trim());
+            }
+            return new Mix(operations, weights);
+        }
+
+        public Operation next(Random random) {
+            return operations[SizeDistribution.pick(cumulative, random)];
+        }
+    }
+}
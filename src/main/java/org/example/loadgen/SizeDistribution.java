@@ -0,0 +1,177 @@
+package org.example.loadgen;
+
+import java.util.Random;
+
+/**
+ * 压测上传文件的大小分布
+ * <p>
+ * 支持以下写法，大小可带k/m/g后缀(1024进制)：
+ * <ul>
+ * <li>{@code 64k} 固定大小</li>
+ * <li>{@code uniform:1k-1m} 区间内均匀分布</li>
+ * <li>{@code lognormal:64k,1.5,16m} 对数正态分布，中位数、sigma、上限(可省略，默认64m)</li>
+ * <li>{@code mix:4k=60,256k=30,8m=10} 按权重取固定大小</li>
+ * </ul>
+ *
+ * @author Kent HAN
+ * @date 2026/10/19
+ */
+public abstract class SizeDistribution {
+
+    private static final long DEFAULT_LOGNORMAL_MAX = 64L << 20;
+
+    /**
+     * 取一个大小
+     */
+    public abstract long next(Random random);
+
+    /**
+     * 可能取到的最大值
+     */
+    public abstract long max();
+
+    public static SizeDistribution parse(String spec) {
+        String s = spec.trim().toLowerCase();
+        int colon = s.indexOf(':');
+        if (colon < 0) {
+            return fixed(parseSize(s));
+        }
+        String type = s.substring(0, colon);
+        String args = s.substring(colon + 1);
+        switch (type) {
+            case "uniform": {
+                String[] range = args.split("-");
+                return uniform(parseSize(range[0]), parseSize(range[1]));
+            }
+            case "lognormal": {
+                String[] p = args.split(",");
+                long max = p.length > 2 ? parseSize(p[2]) : DEFAULT_LOGNORMAL_MAX;
+                return lognormal(parseSize(p[0]), Double.parseDouble(p[1].trim()), max);
+            }
+            case "mix": {
+                String[] items = args.split(",");
+                long[] sizes = new long[items.length];
+                double[] weights = new double[items.length];
+                for (int i = 0; i < items.length; i++) {
+                    String[] kv = items[i].split("=");
+                    sizes[i] = parseSize(kv[0]);
+                    weights[i] = Double.parseDouble(kv[1].trim());
+                }
+                return mix(sizes, weights);
+            }
+            default:
+                throw new IllegalArgumentException("unknown size distribution: " + spec);
+        }
+    }
+
+    /**
+     * 解析带k/m/g后缀的大小
+     */
+    public static long parseSize(String size) {
+        String s = size.trim().toLowerCase();
+        long unit = 1;
+        char last = s.charAt(s.length() - 1);
+        if (last == 'k' || last == 'm' || last == 'g') {
+            unit = last == 'k' ? 1L << 10 : last == 'm' ? 1L << 20 : 1L << 30;
+            s = s.substring(0, s.length() - 1);
+        }
+        long value = Long.parseLong(s.trim()) * unit;
+        if (value <= 0) {
+            throw new IllegalArgumentException("size must be positive: " + size);
+        }
+        return value;
+    }
+
+    private static SizeDistribution fixed(long size) {
+        return new SizeDistribution() {
+            @Override
+            public long next(Random random) {
+                return size;
+            }
+
+            @Override
+            public long max() {
+                return size;
+            }
+        };
+    }
+
+    private static SizeDistribution uniform(long min, long max) {
+        if (max < min) {
+            throw new IllegalArgumentException("uniform range max < min");
+        }
+        return new SizeDistribution() {
+            @Override
+            public long next(Random random) {
+                return min + (long) (random.nextDouble() * (max - min + 1));
+            }
+
+            @Override
+            public long max() {
+                return max;
+            }
+        };
+    }
+
+    private static SizeDistribution lognormal(long median, double sigma, long max) {
+        double mu = Math.log(median);
+        return new SizeDistribution() {
+            @Override
+            public long next(Random random) {
+                long size = (long) Math.exp(mu + sigma * random.nextGaussian());
+                return Math.max(1, Math.min(size, max));
+            }
+
+            @Override
+            public long max() {
+                return max;
+            }
+        };
+    }
+
+    private static SizeDistribution mix(long[] sizes, double[] weights) {
+        double[] cumulative = cumulative(weights);
+        long max = 0;
+        for (long size : sizes) {
+            max = Math.max(max, size);
+        }
+        long maxSize = max;
+        return new SizeDistribution() {
+            @Override
+            public long next(Random random) {
+                return sizes[pick(cumulative, random)];
+            }
+
+            @Override
+            public long max() {
+                return maxSize;
+            }
+        };
+    }
+
+    static double[] cumulative(double[] weights) {
+        double[] cumulative = new double[weights.length];
+        double sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            if (weights[i] < 0) {
+                throw new IllegalArgumentException("weight must not be negative");
+            }
+            sum += weights[i];
+            cumulative[i] = sum;
+        }
+        if (sum <= 0) {
+            throw new IllegalArgumentException("weights sum must be positive");
+        }
+        return cumulative;
+    }
+
+    static int pick(double[] cumulative, Random random) {
+        double r = random.nextDouble() * cumulative[cumulative.length - 1];
+        for (int i = 0; i < cumulative.length; i++) {
+            if (r < cumulative[i]) {
+                return i;
+            }
+        }
+        return cumulative.length - 1;
+    }
+}
@@ -0,0 +1,189 @@
+package org.example.service;
+
+import org.example.util.TokenBucket;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 批量下载任务的进度
+ *
+ * @author Kent HAN
+ * @date 2026/10/19
+ */
+public class BulkDownloadJob {
+
+    private final String targetRoot;
+
+    private final int total;
+
+    private final int concurrency;
+
+    private final long startMillis = System.currentTimeMillis();
+
+    private final AtomicInteger downloaded = new AtomicInteger();
+
+    private final AtomicInteger skipped = new AtomicInteger();
+
+    private final AtomicInteger retried = new AtomicInteger();
+
+    private final AtomicLong bytes = new AtomicLong();
+
+    private final Map<String, String> failures = new ConcurrentHashMap<>();
+
+    private final CountDownLatch done;
+
+    private volatile long finishMillis;
+
+    private volatile boolean cancelled;
+
+    private volatile Runnable completion;
+
+    private final TokenBucket bandwidth;
+
+    BulkDownloadJob(String targetRoot, int total, int concurrency, TokenBucket bandwidth) {
+        this.targetRoot = targetRoot;
+        this.total = total;
+        this.concurrency = concurrency;
+        this.bandwidth = bandwidth;
+        this.done = new CountDownLatch(total);
+    }
+
+    /**
+     * 等待任务结束
+     */
+    public void await() throws InterruptedException {
+        done.await();
+    }
+
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return done.await(timeout, unit);
+    }
+
+    /**
+     * 取消任务，正在下载的文件会下载完，尚未开始的不再下载
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * 调整任务限速，字节/秒，0为不限
+     */
+    public void setBytesPerSecond(long bytesPerSecond) {
+        bandwidth.setBytesPerSecond(bytesPerSecond);
+    }
+
+    TokenBucket getBandwidth() {
+        return bandwidth;
+    }
+
+    public boolean isDone() {
+        return done.getCount() == 0;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public String getTargetRoot() {
+        return targetRoot;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public int getDownloaded() {
+        return downloaded.get();
+    }
+
+    public int getSkipped() {
+        return skipped.get();
+    }
+
+    public int getRetried() {
+        return retried.get();
+    }
+
+    public int getFailed() {
+        return failures.size();
+    }
+
+    public Map<String, String> getFailures() {
+        return failures;
+    }
+
+    public int getFinished() {
+        return (int) (total - done.getCount());
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    public long getElapsedMillis() {
+        return (finishMillis > 0 ? finishMillis : System.currentTimeMillis()) - startMillis;
+    }
+
+    /**
+     * 平均吞吐，字节/秒
+     */
+    public long getThroughput() {
+        long elapsed = Math.max(1, getElapsedMillis());
+        return bytes.get() * 1000 / elapsed;
+    }
+
+    void onDownloaded(long size) {
+        bytes.addAndGet(size);
+        downloaded.incrementAndGet();
+        finishOne();
+    }
+
+    void onSkipped() {
+        skipped.incrementAndGet();
+        finishOne();
+    }
+
+    void onRetry() {
+        retried.incrementAndGet();
+    }
+
+    void onFailed(String remotePath, String message) {
+        failures.put(remotePath, String.valueOf(message));
+        finishOne();
+    }
+
+    void onComplete(Runnable completion) {
+        this.completion = completion;
+    }
+
+    private void finishOne() {
+        boolean last;
+        synchronized (done) {
+            last = done.getCount() == 1;
+            if (last) {
+                finishMillis = System.currentTimeMillis();
+            }
+            done.countDown();
+        }
+        if (last && completion != null) {
+            completion.run();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d/%d finished (downloaded:%d skipped:%d failed:%d retried:%d) %.1f MB in %d ms, %.1f MB/s",
+                getFinished(), total, getDownloaded(), getSkipped(), getFailed(), getRetried(),
+                getBytes() / 1048576.0, getElapsedMillis(), getThroughput() / 1048576.0);
+    }
+}
@@ -0,0 +1,193 @@
+package org.example.service;
+
+import com.github.tobato.fastdfs.domain.fdfs.FileInfo;
+import com.github.tobato.fastdfs.service.FastFileStorageClient;
+import lombok.extern.slf4j.Slf4j;
+import org.example.util.BandwidthShaper;
+import org.example.util.FileDownloadCallback;
+import org.example.util.FileUtil;
+import org.example.util.TrafficLane;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * 批量并行下载/导出
+ * <p>
+ * 并发数默认取每个storage连接上限(fdfs.pool.max-total-per-key)的一半，给其他请求留出连接；
+ * 该上限由所有任务共用，同时运行多个任务也不会超过，单个任务的并发数只限制自己的线程数。
+ * 本地已存在且大小和CRC32都与远程一致的文件直接跳过，失败的文件按次数重试，同一任务中重复的路径只下载一次。
+ *
+ * @author Kent HAN
+ * @date 2026/10/19
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(value = "fdfs.groupName")
+public class BulkDownloadService {
+
+    @Autowired
+    private FastFileStorageClient storageClient;
+
+    @Autowired
+    private BandwidthShaper bandwidthShaper;
+
+    @Value("${fdfs.groupName}")
+    private String groupName;
+
+    @Value("${fdfs.fileDownUrl}")
+    private String fileDownUrl;
+
+    @Value("${fdfs.pool.max-total-per-key:50}")
+    private int maxTotalPerKey;
+
+    /**
+     * 所有任务合计的并发数，也是单个任务的默认并发数，0表示按连接池计算
+     */
+    @Value("${fdfs.bulk.concurrency:0}")
+    private int concurrency;
+
+    @Value("${fdfs.bulk.retries:3}")
+    private int retries;
+
+    @Value("${fdfs.bulk.progressSeconds:10}")
+    private int progressSeconds;
+
+    /**
+     * 所有任务共用的下载名额
+     */
+    private Semaphore permits;
+
+    private final ScheduledExecutorService progressReporter = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "fdfs-bulk-progress");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @PostConstruct
+    public void init() {
+        permits = new Semaphore(resolveConcurrency(0), true);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        progressReporter.shutdownNow();
+    }
+
+    /**
+     * 下载到fdfs.fileDownUrl
+     */
+    public BulkDownloadJob submit(List<String> remotePaths) {
+        return submit(remotePaths, fileDownUrl, 0);
+    }
+
+    /**
+     * 提交批量下载任务，立即返回
+     *
+     * @param remotePaths 远程文件路径，可带组名，重复的路径只下载一次
+     * @param targetRoot  本地根目录，文件按远程路径存放
+     * @param concurrency 并发数，0表示使用配置值，超过所有任务共用的上限时取上限
+     * @return 任务进度
+     */
+    public BulkDownloadJob submit(List<String> remotePaths, String targetRoot, int concurrency) {
+        int limit = Math.min(resolveConcurrency(concurrency), resolveConcurrency(0));
+        Map<String, String> paths = new LinkedHashMap<>();
+        for (String remotePath : remotePaths) {
+            paths.putIfAbsent(stripGroup(remotePath), remotePath);
+        }
+        BulkDownloadJob job = new BulkDownloadJob(targetRoot, paths.size(), limit, bandwidthShaper.newJob());
+        if (paths.isEmpty()) {
+            return job;
+        }
+        ScheduledFuture<?> progress = progressReporter.scheduleAtFixedRate(
+                () -> log.info("bulk download to {}: {}", targetRoot, job), progressSeconds, progressSeconds, TimeUnit.SECONDS);
+        job.onComplete(() -> {
+            progress.cancel(false);
+            log.info("bulk download to {} done: {}", targetRoot, job);
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(limit, r -> {
+            Thread t = new Thread(() -> TrafficLane.run(TrafficLane.BULK,
+                    () -> BandwidthShaper.runWithJob(job.getBandwidth(), r)), "fdfs-bulk-download");
+            t.setDaemon(true);
+            return t;
+        });
+        for (Map.Entry<String, String> e : paths.entrySet()) {
+            executor.execute(() -> downloadOne(job, e.getValue(), e.getKey()));
+        }
+        executor.shutdown();
+        return job;
+    }
+
+    private int resolveConcurrency(int requested) {
+        int limit = requested > 0 ? requested : concurrency;
+        if (limit <= 0) {
+            limit = Math.max(1, maxTotalPerKey / 2);
+        }
+        return Math.min(limit, maxTotalPerKey);
+    }
+
+    private String stripGroup(String remotePath) {
+        if (remotePath.contains(groupName)) {
+            return remotePath.replace(groupName + "/", "");
+        }
+        return remotePath;
+    }
+
+    private void downloadOne(BulkDownloadJob job, String remotePath, String path) {
+        if (job.isCancelled()) {
+            job.onFailed(remotePath, "cancelled");
+            return;
+        }
+        File target = new File(job.getTargetRoot(), path);
+        Exception last = null;
+        for (int attempt = 0; attempt <= retries; attempt++) {
+            if (attempt > 0) {
+                job.onRetry();
+                sleepQuietly(200L * attempt);
+            }
+            permits.acquireUninterruptibly();
+            try {
+                FileInfo fileInfo = storageClient.queryFileInfo(groupName, path);
+                if (fileInfo == null) {
+                    job.onFailed(remotePath, "文件系统无此文件");
+                    return;
+                }
+                if (isSame(target, fileInfo)) {
+                    job.onSkipped();
+                    return;
+                }
+                long size = storageClient.downloadFile(groupName, path, bandwidthShaper.throttle(new FileDownloadCallback(target)));
+                job.onDownloaded(size);
+                return;
+            } catch (Exception e) {
+                last = e;
+                log.warn("bulk download remote:{} attempt:{} error:{}", remotePath, attempt + 1, e.getMessage());
+            } finally {
+                permits.release();
+            }
+        }
+        job.onFailed(remotePath, last == null ? null : last.getMessage());
+    }
+
+    private static boolean isSame(File target, FileInfo fileInfo) throws Exception {
+        return target.isFile() && target.length() == fileInfo.getFileSize()
+                && FileUtil.crc32(target) == (fileInfo.getCrc32() & 0xFFFFFFFFL);
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package org.example.service;
+
+import com.github.tobato.fastdfs.domain.fdfs.StorePath;
+import com.github.tobato.fastdfs.service.FastFileStorageClient;
+import com.google.common.hash.Hashing;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FilenameUtils;
+import org.example.util.BandwidthShaper;
+import org.example.util.FileAppender;
+import org.example.util.FileUtil;
+import org.example.util.TokenBucket;
+import org.example.util.TrafficLane;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地目录到FastDFS的增量同步
+ * <p>
+ * 清单文件记录 相对路径 -> (大小, 修改时间, 内容摘要, 远程路径)，每次只处理新增、修改和删除的文件。
+ * 大小和修改时间都未变化的文件直接跳过，变化的文件再计算摘要确认内容是否真的改变。
+ * 每完成一个文件就追加一条日志，中断后再次同步会先重放日志，已完成的文件不会重复上传。
+ * 修改过的文件上传新内容后，旧的远程文件先记为待删除再删除，中断或删除失败时在下次同步开始时重新删除。
+ * 同一个清单文件的同步串行执行。
+ *
+ * @author Kent HAN
+ * @date 2026/10/19
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(value = "fdfs.groupName")
+public class DirectorySyncService {
+
+    private static final String JOURNAL_SUFFIX = ".journal";
+
+    private static final ConcurrentMap<String, Object> MANIFEST_LOCKS = new ConcurrentHashMap<>();
+
+    @Autowired
+    private FastFileStorageClient storageClient;
+
+    @Autowired
+    private BandwidthShaper bandwidthShaper;
+
+    @Value("${fdfs.sync.concurrency:8}")
+    private int concurrency;
+
+    /**
+     * 同步目录
+     *
+     * @param localRoot    本地根目录
+     * @param manifestFile 清单文件，不存在时视为首次同步
+     * @return 同步结果
+     */
+    public SyncReport sync(File localRoot, File manifestFile) throws Exception {
+        if (!localRoot.isDirectory()) {
+            throw new IllegalArgumentException("The local root not exist or not a directory: " + localRoot);
+        }
+        Object lock = MANIFEST_LOCKS.computeIfAbsent(manifestFile.getAbsolutePath(), k -> new Object());
+        synchronized (lock) {
+            return doSync(localRoot, manifestFile);
+        }
+    }
+
+    private SyncReport doSync(File localRoot, File manifestFile) throws Exception {
+        long start = System.currentTimeMillis();
+        File journalFile = new File(manifestFile.getPath() + JOURNAL_SUFFIX);
+        Set<String> orphans = ConcurrentHashMap.newKeySet();
+        Map<String, ManifestEntry> manifest = new ConcurrentHashMap<>(loadManifest(manifestFile, journalFile, orphans));
+
+        SyncReport report = new SyncReport();
+        FileAppender journal = FileAppender.of(journalFile.getPath(), FileAppender.DEFAULT_BUFFER_SIZE,
+                FileAppender.DEFAULT_FLUSH_BYTES, 100, FileAppender.FsyncPolicy.INTERVAL, 1000);
+        TokenBucket bandwidth = bandwidthShaper.newJob();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency, r -> {
+            Thread t = new Thread(() -> TrafficLane.run(TrafficLane.BULK,
+                    () -> BandwidthShaper.runWithJob(bandwidth, r)), "fdfs-sync");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (String orphan : orphans) {
+                futures.add(executor.submit(() -> deleteOrphan(orphan, orphans, journal)));
+            }
+            Map<String, File> local = new HashMap<>();
+            String rootPath = localRoot.getAbsolutePath();
+            for (File file : FileUtil.listFiles(localRoot)) {
+                String relative = file.getAbsolutePath().substring(rootPath.length() + 1).replace(File.separatorChar, '/');
+                local.put(relative, file);
+            }
+
+            for (Map.Entry<String, File> e : local.entrySet()) {
+                ManifestEntry old = manifest.get(e.getKey());
+                File file = e.getValue();
+                if (old != null && old.size == file.length() && old.mtime == file.lastModified()) {
+                    report.unchanged.incrementAndGet();
+                    continue;
+                }
+                futures.add(executor.submit(() -> syncFile(e.getKey(), file, old, manifest, orphans, journal, report)));
+            }
+            for (Map.Entry<String, ManifestEntry> e : manifest.entrySet()) {
+                if (!local.containsKey(e.getKey())) {
+                    futures.add(executor.submit(() -> deleteRemote(e.getKey(), e.getValue(), manifest, journal, report)));
+                }
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+            journal.close();
+        }
+        writeManifest(manifestFile, manifest, orphans);
+        Files.deleteIfExists(journalFile.toPath());
+        report.setElapsedMillis(System.currentTimeMillis() - start);
+        log.info("sync {} finished:{}", localRoot, report);
+        return report;
+    }
+
+    private void syncFile(String relative, File file, ManifestEntry old, Map<String, ManifestEntry> manifest,
+                          Set<String> orphans, FileAppender journal, SyncReport report) {
+        try {
+            long size = file.length();
+            long mtime = file.lastModified();
+            String hash = com.google.common.io.Files.asByteSource(file).hash(Hashing.sha256()).toString();
+            if (old != null && hash.equals(old.hash)) {
+                // 只是修改时间变化，内容未变
+                ManifestEntry entry = new ManifestEntry(size, mtime, hash, old.group, old.path);
+                manifest.put(relative, entry);
+                journal.append(journalLine(relative, entry));
+                report.unchanged.incrementAndGet();
+                return;
+            }
+            StorePath storePath;
+            try (InputStream in = new FileInputStream(file)) {
+                storePath = storageClient.uploadFile(bandwidthShaper.throttle(in), size, FilenameUtils.getExtension(file.getName()), null);
+            }
+            ManifestEntry entry = new ManifestEntry(size, mtime, hash, storePath.getGroup(), storePath.getPath());
+            manifest.put(relative, entry);
+            report.bytesUploaded.addAndGet(size);
+            if (old == null) {
+                journal.append(journalLine(relative, entry));
+                report.added.incrementAndGet();
+                return;
+            }
+            // 新记录和旧文件的待删除标记一次写入，中断后重放时再删除旧文件
+            String orphan = old.group + "/" + old.path;
+            orphans.add(orphan);
+            journal.append(journalLine(relative, entry) + "O\t" + encode(orphan) + "\n");
+            report.changed.incrementAndGet();
+            deleteOrphan(orphan, orphans, journal);
+        } catch (Exception e) {
+            report.fail(relative, e);
+        }
+    }
+
+    /**
+     * 删除已被替换的远程文件，失败时保留待删除标记，下次同步重试
+     */
+    private void deleteOrphan(String orphan, Set<String> orphans, FileAppender journal) {
+        int slash = orphan.indexOf('/');
+        try {
+            if (storageClient.queryFileInfo(orphan.substring(0, slash), orphan.substring(slash + 1)) != null) {
+                storageClient.deleteFile(orphan.substring(0, slash), orphan.substring(slash + 1));
+            }
+            orphans.remove(orphan);
+            journal.append("C\t" + encode(orphan) + "\n");
+        } catch (Exception e) {
+            log.error("delete replaced remote:{} error:{}", orphan, e.getMessage());
+        }
+    }
+
+    private void deleteRemote(String relative, ManifestEntry old, Map<String, ManifestEntry> manifest,
+                              FileAppender journal, SyncReport report) {
+        try {
+            if (storageClient.queryFileInfo(old.group, old.path) != null) {
+                storageClient.deleteFile(old.group, old.path);
+            }
+            manifest.remove(relative);
+            journal.append("D\t" + encode(relative) + "\n");
+            report.deleted.incrementAndGet();
+        } catch (Exception e) {
+            report.fail(relative, e);
+        }
+    }
+
+    /**
+     * 读取清单快照并重放上次未完成同步留下的日志
+     */
+    private Map<String, ManifestEntry> loadManifest(File manifestFile, File journalFile, Set<String> orphans) throws IOException {
+        Map<String, ManifestEntry> manifest = new HashMap<>();
+        readLines(manifestFile, manifest, orphans);
+        int replayed = readLines(journalFile, manifest, orphans);
+        if (replayed > 0) {
+            log.info("resume sync from journal:{}, {} entries replayed", journalFile, replayed);
+        }
+        return manifest;
+    }
+
+    private int readLines(File file, Map<String, ManifestEntry> manifest, Set<String> orphans) throws IOException {
+        if (!file.isFile()) {
+            return 0;
+        }
+        int count = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] cols = line.split("\t");
+                if (cols.length == 2 && "D".equals(cols[0])) {
+                    manifest.remove(decode(cols[1]));
+                } else if (cols.length == 2 && "O".equals(cols[0])) {
+                    orphans.add(decode(cols[1]));
+                } else if (cols.length == 2 && "C".equals(cols[0])) {
+                    orphans.remove(decode(cols[1]));
+                } else if (cols.length == 7 && "U".equals(cols[0])) {
+                    manifest.put(decode(cols[1]), new ManifestEntry(Long.parseLong(cols[2]), Long.parseLong(cols[3]),
+                            cols[4], cols[5], cols[6]));
+                } else {
+                    // 中断时最后一行可能只写了一半
+                    continue;
+                }
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void writeManifest(File manifestFile, Map<String, ManifestEntry> manifest, Set<String> orphans) throws IOException {
+        FileUtil.newFolder(manifestFile.getAbsoluteFile().getParentFile());
+        File tmp = new File(manifestFile.getPath() + ".tmp");
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8))) {
+            for (Map.Entry<String, ManifestEntry> e : new TreeMap<>(manifest).entrySet()) {
+                writer.write(journalLine(e.getKey(), e.getValue()));
+            }
+            for (String orphan : new TreeSet<>(orphans)) {
+                writer.write("O\t" + encode(orphan) + "\n");
+            }
+        }
+        Files.move(tmp.toPath(), manifestFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String journalLine(String relative, ManifestEntry entry) {
+        return "U\t" + encode(relative) + "\t" + entry.size + "\t" + entry.mtime + "\t" + entry.hash
+                + "\t" + entry.group + "\t" + entry.path + "\n";
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class ManifestEntry {
+        private final long size;
+        private final long mtime;
+        private final String hash;
+        private final String group;
+        private final String path;
+
+        private ManifestEntry(long size, long mtime, String hash, String group, String path) {
+            this.size = size;
+            this.mtime = mtime;
+            this.hash = hash;
+            this.group = group;
+            this.path = path;
+        }
+    }
+
+    /**
+     * 同步结果
+     */
+    @Data
+    public static class SyncReport {
+        private final AtomicInteger added = new AtomicInteger();
+        private final AtomicInteger changed = new AtomicInteger();
+        private final AtomicInteger deleted = new AtomicInteger();
+        private final AtomicInteger unchanged = new AtomicInteger();
+        private final AtomicLong bytesUploaded = new AtomicLong();
+        private final Map<String, String> failures = new ConcurrentHashMap<>();
+        private long elapsedMillis;
+
+        private void fail(String relative, Exception e) {
+            log.error("sync file:{} error:{}", relative, e.getMessage());
+            failures.put(relative, String.valueOf(e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package org.example.service;
+
+import com.github.tobato.fastdfs.domain.fdfs.StorePath;
+import com.github.tobato.fastdfs.service.AppendFileStorageClient;
+import lombok.extern.slf4j.Slf4j;
+import org.example.util.BandwidthShaper;
+import org.example.util.TokenBucket;
+import org.example.util.TrafficLane;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 本地目录边压缩边上传
+ * <p>
+ * 压缩线程把zip按块写入有界队列，当前线程从队列取块追加到appender文件，
+ * 不落临时文件，压缩和网络传输同时进行，队列满时压缩线程等待，内存占用不超过 (queueChunks + 2) 个块。
+ *
+ * @author Kent HAN
+ * @date 2026/10/19
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(value = "fdfs.groupName")
+public class FolderZipUploadService {
+
+    private static final String ZIP_EXT = "zip";
+
+    @Autowired
+    private AppendFileStorageClient appendFileStorageClient;
+
+    @Autowired
+    private BandwidthShaper bandwidthShaper;
+
+    @Value("${fdfs.groupName}")
+    private String groupName;
+
+    /**
+     * 队列中最多缓冲的块数
+     */
+    @Value("${fdfs.zip.queueChunks:2}")
+    private int queueChunks;
+
+    /**
+     * 每次追加上传的字节数
+     */
+    @Value("${fdfs.zip.chunkSize:4194304}")
+    private int chunkSize;
+
+    public String uploadFolderAsZip(String folderPath) throws Exception {
+        return uploadFolderAsZip(folderPath, null);
+    }
+
+    /**
+     * 将目录压缩为zip并上传
+     *
+     * @param folderPath 本地目录
+     * @param filterDir  过滤目录名称，与FileUtil.copyFolder一致，任意层级下同名的子目录都不打包
+     * @return 远程文件路径
+     * @throws Exception
+     */
+    public String uploadFolderAsZip(String folderPath, String filterDir) throws Exception {
+        File folder = new File(folderPath);
+        if (!folder.isDirectory()) {
+            throw new IllegalArgumentException("The folder not exist or not a directory: " + folderPath);
+        }
+        ChunkPipe pipe = new ChunkPipe(chunkSize, queueChunks);
+        AtomicReference<Exception> zipError = new AtomicReference<>();
+        Thread zipper = new Thread(() -> {
+            try (ZipOutputStream zip = new ZipOutputStream(pipe)) {
+                zipFolder(zip, folder, "", filterDir);
+            } catch (Exception e) {
+                zipError.set(e);
+            } finally {
+                pipe.finish();
+            }
+        }, "fdfs-zip-" + folder.getName());
+        zipper.setDaemon(true);
+        zipper.start();
+
+        AtomicReference<StorePath> storePath = new AtomicReference<>();
+        try {
+            // 整个目录的上传按批量任务占用连接和限速
+            TokenBucket bandwidth = bandwidthShaper.newJob();
+            TrafficLane.call(TrafficLane.BULK, () -> BandwidthShaper.callWithJob(bandwidth, () -> {
+                byte[] chunk;
+                while ((chunk = pipe.take()) != ChunkPipe.EOF) {
+                    InputStream in = bandwidthShaper.throttle(new ByteArrayInputStream(chunk));
+                    if (storePath.get() == null) {
+                        storePath.set(appendFileStorageClient.uploadAppenderFile(groupName, in, chunk.length, ZIP_EXT));
+                    } else {
+                        appendFileStorageClient.appendFile(storePath.get().getGroup(), storePath.get().getPath(), in, chunk.length);
+                    }
+                }
+                return null;
+            }));
+            zipper.join();
+            if (zipError.get() != null) {
+                throw zipError.get();
+            }
+            if (storePath.get() == null) {
+                throw new IOException("empty zip stream");
+            }
+            return storePath.get().getFullPath();
+        } catch (Exception e) {
+            // 让压缩线程尽快退出
+            pipe.abort();
+            deleteQuietly(storePath.get());
+            throw new Exception("upload remote path exception," + e.getMessage(), e);
+        }
+    }
+
+    private void zipFolder(ZipOutputStream zip, File dir, String prefix, String filterDir) throws IOException {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        byte[] buffer = new byte[64 * 1024];
+        for (File file : files) {
+            String name = prefix + file.getName();
+            if (file.isFile()) {
+                zip.putNextEntry(new ZipEntry(name));
+                try (InputStream in = new FileInputStream(file)) {
+                    int n;
+                    while ((n = in.read(buffer)) != -1) {
+                        zip.write(buffer, 0, n);
+                    }
+                }
+                zip.closeEntry();
+            } else if (file.isDirectory() && !file.getName().equals(filterDir)) {
+                zip.putNextEntry(new ZipEntry(name + "/"));
+                zip.closeEntry();
+                zipFolder(zip, file, name + "/", filterDir);
+            }
+        }
+    }
+
+    private void deleteQuietly(StorePath storePath) {
+        if (storePath == null) {
+            return;
+        }
+        try {
+            appendFileStorageClient.deleteFile(storePath.getGroup(), storePath.getPath());
+        } catch (Exception e) {
+            log.error("delete partial zip:{} error:{}", storePath.getFullPath(), e.getMessage());
+        }
+    }
+
+    /**
+     * 按块写入有界队列的输出流
+     */
+    private static class ChunkPipe extends OutputStream {
+
+        private static final byte[] EOF = new byte[0];
+
+        private final BlockingQueue<byte[]> queue;
+
+        private final int chunkSize;
+
+        private byte[] current;
+
+        private int position;
+
+        private boolean finished;
+
+        private volatile boolean aborted;
+
+        private ChunkPipe(int chunkSize, int queueChunks) {
+            this.chunkSize = chunkSize;
+            this.queue = new ArrayBlockingQueue<>(Math.max(1, queueChunks) + 1);
+            this.current = new byte[chunkSize];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            current[position++] = (byte) b;
+            if (position == chunkSize) {
+                emit();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int n = Math.min(len, chunkSize - position);
+                System.arraycopy(b, off, current, position, n);
+                position += n;
+                off += n;
+                len -= n;
+                if (position == chunkSize) {
+                    emit();
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (position > 0) {
+                current = Arrays.copyOf(current, position);
+                emit();
+            }
+        }
+
+        /**
+         * 写入结束标记，可重复调用
+         */
+        private void finish() {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            try {
+                put(EOF);
+            } catch (IOException e) {
+                log.debug("zip pipe aborted before finish");
+            }
+        }
+
+        private void abort() {
+            aborted = true;
+            queue.clear();
+        }
+
+        private byte[] take() throws InterruptedException {
+            return queue.take();
+        }
+
+        private void emit() throws IOException {
+            put(current);
+            current = new byte[chunkSize];
+            position = 0;
+        }
+
+        private void put(byte[] chunk) throws IOException {
+            try {
+                while (!queue.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+                    if (aborted) {
+                        throw new IOException("upload aborted");
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("zip pipe interrupted");
+            }
+        }
+    }
+}
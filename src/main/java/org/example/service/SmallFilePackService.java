@@ -0,0 +1,610 @@
+package org.example.service;
+
+import com.github.tobato.fastdfs.domain.fdfs.FileInfo;
+import com.github.tobato.fastdfs.domain.fdfs.StorePath;
+import com.github.tobato.fastdfs.domain.proto.storage.DownloadByteArray;
+import com.github.tobato.fastdfs.service.AppendFileStorageClient;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FilenameUtils;
+import org.example.util.FileUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.*;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 小文件打包存储
+ * <p>
+ * 小于阈值的文件先在内存中攒批，再整批追加到共享的appender容器文件中，
+ * 本地索引记录 key -> (容器, 偏移, 长度)，读取时按偏移下载。
+ * 超过阈值的文件仍单独上传，但同样登记到索引中，调用方只需使用key访问。
+ * 日志同时记录每个容器及其已提交的长度，重启后继续向最后一个容器追加，压缩时能找到所有容器，包括已经没有有效数据的容器。
+ *
+ * @author Kent HAN
+ * @date 2026/10/19
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(value = "fdfs.groupName")
+public class SmallFilePackService {
+
+    private static final String CONTAINER_EXT = "pack";
+
+    @Autowired
+    private AppendFileStorageClient appendFileStorageClient;
+
+    @Value("${fdfs.groupName}")
+    private String groupName;
+
+    /**
+     * 小于该字节数的文件打包存储
+     */
+    @Value("${fdfs.pack.threshold:65536}")
+    private int threshold;
+
+    /**
+     * 单个容器文件的最大字节数，超过后新建容器
+     */
+    @Value("${fdfs.pack.containerSize:67108864}")
+    private long containerSize;
+
+    /**
+     * 攒批达到该字节数立即提交
+     */
+    @Value("${fdfs.pack.batchSize:1048576}")
+    private int batchSize;
+
+    /**
+     * 攒批最长等待毫秒数
+     */
+    @Value("${fdfs.pack.flushMillis:200}")
+    private long flushMillis;
+
+    @Value("${fdfs.pack.indexFile:${fdfs.fileDownUrl}/.pack/pack.index}")
+    private String indexFile;
+
+    /**
+     * 已落盘的索引
+     */
+    private final Map<String, PackEntry> index = new ConcurrentHashMap<>();
+
+    /**
+     * 尚未提交的数据，读取时优先命中
+     */
+    private final Map<String, byte[]> pendingData = new ConcurrentHashMap<>();
+
+    /**
+     * 所有容器及已提交的长度，按最近写入排序，最后一个为重启后继续追加的容器，持有flushLock访问
+     */
+    private final Map<String, Container> containers = new LinkedHashMap<>();
+
+    private final Object lock = new Object();
+
+    private final Object flushLock = new Object();
+
+    private List<PendingItem> batch = new ArrayList<>();
+
+    private long batchBytes;
+
+    private Container current;
+
+    private Writer journal;
+
+    private ScheduledExecutorService flusher;
+
+    @PostConstruct
+    public void init() throws IOException {
+        loadIndex();
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "fdfs-pack-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        flushQuietly();
+        synchronized (flushLock) {
+            closeJournal();
+        }
+    }
+
+    /**
+     * 写入对象，小文件进入攒批，大文件直接上传
+     *
+     * @param key   业务key
+     * @param bytes 文件内容
+     */
+    public void put(String key, byte[] bytes) throws Exception {
+        if (bytes.length >= threshold) {
+            putStandalone(key, bytes);
+            return;
+        }
+        // 复制一份，调用方之后修改数组不影响待提交的数据
+        byte[] data = bytes.clone();
+        boolean full;
+        synchronized (lock) {
+            pendingData.put(key, data);
+            batch.add(new PendingItem(key, data, null));
+            batchBytes += bytes.length;
+            full = batchBytes >= batchSize;
+        }
+        if (full && flusher != null) {
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * 读取对象
+     *
+     * @param key 业务key
+     * @return 文件内容，不存在返回null
+     */
+    public byte[] get(String key) throws Exception {
+        byte[] pending = pendingData.get(key);
+        if (pending != null) {
+            return pending.clone();
+        }
+        PackEntry entry = index.get(key);
+        if (entry == null) {
+            return null;
+        }
+        try {
+            return appendFileStorageClient.downloadFile(entry.getGroup(), entry.getPath(),
+                    entry.getOffset(), entry.getLength(), new DownloadByteArray());
+        } catch (Exception e) {
+            throw new Exception("download packed(" + key + ") exception", e);
+        }
+    }
+
+    public boolean contains(String key) {
+        return pendingData.containsKey(key) || index.containsKey(key);
+    }
+
+    public PackEntry getEntry(String key) {
+        return index.get(key);
+    }
+
+    /**
+     * 删除对象，打包存储的数据在压缩时回收
+     *
+     * @param key 业务key
+     * @return 是否存在
+     */
+    public boolean delete(String key) throws Exception {
+        PackEntry removed;
+        boolean wasPending;
+        synchronized (lock) {
+            wasPending = pendingData.remove(key) != null;
+            removed = index.remove(key);
+        }
+        if (removed != null) {
+            synchronized (flushLock) {
+                appendJournal("D\t" + encode(key));
+                flushJournal();
+            }
+            if (!removed.isPacked()) {
+                try {
+                    appendFileStorageClient.deleteFile(removed.getGroup(), removed.getPath());
+                } catch (Exception e) {
+                    throw new Exception("deleted remote exception by key(" + key + ")", e);
+                }
+            }
+        }
+        return wasPending || removed != null;
+    }
+
+    /**
+     * 立即提交当前攒批
+     */
+    public void flush() throws Exception {
+        synchronized (flushLock) {
+            List<PendingItem> items;
+            synchronized (lock) {
+                if (batch.isEmpty()) {
+                    return;
+                }
+                items = batch;
+                batch = new ArrayList<>();
+                batchBytes = 0;
+            }
+            try {
+                commit(items);
+            } catch (Exception e) {
+                synchronized (lock) {
+                    items.addAll(batch);
+                    batch = items;
+                    batchBytes = 0;
+                    for (PendingItem item : items) {
+                        batchBytes += item.data.length;
+                    }
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 压缩容器，垃圾比例达到阈值的容器中仍有效的数据重新打包，然后删除原容器
+     *
+     * @param garbageRatio 垃圾比例阈值，0~1
+     * @return 回收的字节数
+     */
+    public long compact(double garbageRatio) throws Exception {
+        synchronized (flushLock) {
+            flush();
+            Map<String, List<Map.Entry<String, PackEntry>>> byContainer = new HashMap<>();
+            for (Map.Entry<String, PackEntry> e : index.entrySet()) {
+                if (e.getValue().isPacked()) {
+                    byContainer.computeIfAbsent(e.getValue().getFullPath(), k -> new ArrayList<>()).add(e);
+                }
+            }
+            long reclaimed = 0;
+            for (String container : new ArrayList<>(containers.keySet())) {
+                if (current != null && container.equals(current.getFullPath())) {
+                    continue;
+                }
+                StorePath storePath = StorePath.parseFromUrl(container);
+                List<Map.Entry<String, PackEntry>> live = byContainer.getOrDefault(container, Collections.emptyList());
+                long liveBytes = 0;
+                for (Map.Entry<String, PackEntry> e : live) {
+                    liveBytes += e.getValue().getLength();
+                }
+                FileInfo fileInfo = appendFileStorageClient.queryFileInfo(storePath.getGroup(), storePath.getPath());
+                if (fileInfo == null) {
+                    // 容器已不存在，只有没有有效数据时才从日志中去掉
+                    if (live.isEmpty()) {
+                        containers.remove(container);
+                    }
+                    continue;
+                }
+                if (fileInfo.getFileSize() <= 0) {
+                    continue;
+                }
+                double ratio = 1 - (double) liveBytes / fileInfo.getFileSize();
+                if (ratio < garbageRatio) {
+                    continue;
+                }
+                List<PendingItem> items = new ArrayList<>();
+                for (Map.Entry<String, PackEntry> e : live) {
+                    PackEntry old = e.getValue();
+                    byte[] bytes = appendFileStorageClient.downloadFile(old.getGroup(), old.getPath(),
+                            old.getOffset(), old.getLength(), new DownloadByteArray());
+                    items.add(new PendingItem(e.getKey(), bytes, old));
+                }
+                if (!items.isEmpty()) {
+                    commit(items);
+                }
+                appendFileStorageClient.deleteFile(storePath.getGroup(), storePath.getPath());
+                containers.remove(container);
+                reclaimed += fileInfo.getFileSize() - liveBytes;
+                log.info("compacted pack container:{} reclaimed:{} bytes", container, fileInfo.getFileSize() - liveBytes);
+            }
+            rewriteJournal();
+            return reclaimed;
+        }
+    }
+
+    private void putStandalone(String key, byte[] bytes) throws Exception {
+        StorePath storePath;
+        try {
+            storePath = appendFileStorageClient.uploadFile(groupName, new ByteArrayInputStream(bytes), bytes.length,
+                    FilenameUtils.getExtension(key));
+        } catch (Exception e) {
+            throw new Exception("upload remote path exception," + e.getMessage(), e);
+        }
+        PackEntry entry = new PackEntry(storePath.getGroup(), storePath.getPath(), 0, bytes.length, false);
+        PackEntry old;
+        synchronized (flushLock) {
+            synchronized (lock) {
+                pendingData.remove(key);
+                old = index.put(key, entry);
+            }
+            appendJournal(journalLine(key, entry));
+            flushJournal();
+        }
+        if (old != null && !old.isPacked()) {
+            appendFileStorageClient.deleteFile(old.getGroup(), old.getPath());
+        }
+    }
+
+    /**
+     * 整批追加到容器，必须持有flushLock
+     */
+    private void commit(List<PendingItem> items) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long[] offsets = new long[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            offsets[i] = out.size();
+            out.write(items.get(i).data);
+        }
+        byte[] data = out.toByteArray();
+        if (current != null && !current.verified) {
+            resumeContainer();
+        }
+        long base;
+        if (current == null || current.length + data.length > containerSize) {
+            StorePath storePath = appendFileStorageClient.uploadAppenderFile(groupName, new ByteArrayInputStream(data),
+                    data.length, CONTAINER_EXT);
+            current = new Container(storePath.getGroup(), storePath.getPath(), 0);
+            current.verified = true;
+            base = 0;
+        } else {
+            base = current.length;
+            try {
+                appendFileStorageClient.appendFile(current.group, current.path, new ByteArrayInputStream(data), data.length);
+            } catch (Exception e) {
+                rollbackAppend(base);
+                throw new Exception("append pack container exception," + e.getMessage(), e);
+            }
+        }
+        current.length = base + data.length;
+        containers.remove(current.getFullPath());
+        containers.put(current.getFullPath(), current);
+
+        List<String> lines = new ArrayList<>(items.size() + 1);
+        lines.add(containerLine(current));
+        List<PackEntry> replaced = new ArrayList<>();
+        synchronized (lock) {
+            for (int i = 0; i < items.size(); i++) {
+                PendingItem item = items.get(i);
+                PackEntry entry = new PackEntry(current.group, current.path, base + offsets[i], item.data.length, true);
+                if (item.relocateFrom != null) {
+                    // 压缩搬迁期间被覆盖或删除的key不再更新
+                    if (index.get(item.key) != item.relocateFrom || pendingData.containsKey(item.key)) {
+                        continue;
+                    }
+                } else if (pendingData.get(item.key) != item.data) {
+                    continue;
+                } else {
+                    pendingData.remove(item.key);
+                }
+                PackEntry old = index.put(item.key, entry);
+                if (old != null && !old.isPacked()) {
+                    replaced.add(old);
+                }
+                lines.add(journalLine(item.key, entry));
+            }
+        }
+        for (String line : lines) {
+            appendJournal(line);
+        }
+        flushJournal();
+        // 原先单独存储的key改为打包后，删除原来的文件
+        for (PackEntry old : replaced) {
+            try {
+                appendFileStorageClient.deleteFile(old.getGroup(), old.getPath());
+            } catch (Exception e) {
+                log.error("delete replaced standalone file:{} error:{}", old.getFullPath(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 重启后第一次追加前核对容器，上次退出前未提交的部分截掉，容器丢失或比记录的短则改用新容器
+     */
+    private void resumeContainer() {
+        try {
+            FileInfo fileInfo = appendFileStorageClient.queryFileInfo(current.group, current.path);
+            if (fileInfo == null || fileInfo.getFileSize() < current.length) {
+                log.warn("pack container:{} missing or shorter than journal, start a new one", current.getFullPath());
+                current = null;
+                return;
+            }
+            if (fileInfo.getFileSize() > current.length) {
+                appendFileStorageClient.truncateFile(current.group, current.path, current.length);
+            }
+            current.verified = true;
+        } catch (Exception e) {
+            log.error("resume pack container:{} error:{}", current.getFullPath(), e.getMessage());
+            current = null;
+        }
+    }
+
+    /**
+     * 追加失败时容器可能已写入部分数据，截断回原长度，失败则放弃该容器
+     */
+    private void rollbackAppend(long base) {
+        try {
+            FileInfo fileInfo = appendFileStorageClient.queryFileInfo(current.group, current.path);
+            if (fileInfo != null && fileInfo.getFileSize() > base) {
+                appendFileStorageClient.truncateFile(current.group, current.path, base);
+            }
+        } catch (Exception e) {
+            log.error("rollback pack container:{} error:{}", current.getFullPath(), e.getMessage());
+            current = null;
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("flush pack batch error:{}", e.getMessage());
+        }
+    }
+
+    private void loadIndex() throws IOException {
+        File file = new File(indexFile);
+        if (!file.isFile()) {
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] cols = line.split("\t");
+                if (cols.length == 2 && "D".equals(cols[0])) {
+                    index.remove(decode(cols[1]));
+                } else if (cols.length == 4 && "C".equals(cols[0])) {
+                    Container container = new Container(cols[1], cols[2], Long.parseLong(cols[3]));
+                    containers.remove(container.getFullPath());
+                    containers.put(container.getFullPath(), container);
+                    current = container;
+                } else if (cols.length == 7 && "P".equals(cols[0])) {
+                    PackEntry entry = new PackEntry(cols[2], cols[3], Long.parseLong(cols[4]),
+                            Long.parseLong(cols[5]), "1".equals(cols[6]));
+                    index.put(decode(cols[1]), entry);
+                    if (entry.isPacked()) {
+                        // 没有C记录的旧日志按索引推算容器
+                        containers.computeIfAbsent(entry.getFullPath(), k -> new Container(entry.getGroup(), entry.getPath(),
+                                entry.getOffset() + entry.getLength()));
+                    }
+                }
+            }
+        }
+        log.info("loaded pack index:{} entries:{} containers:{}", indexFile, index.size(), containers.size());
+    }
+
+    /**
+     * 用当前索引快照替换日志，写临时文件后原子改名
+     */
+    private void rewriteJournal() throws IOException {
+        closeJournal();
+        File file = new File(indexFile);
+        FileUtil.newFolder(file.getParentFile());
+        File tmp = new File(file.getPath() + ".tmp");
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8))) {
+            // 按写入顺序记录全部容器，正在追加的容器放在最后
+            for (Container container : containers.values()) {
+                if (container != current) {
+                    writer.write(containerLine(container));
+                    writer.write('\n');
+                }
+            }
+            if (current != null) {
+                writer.write(containerLine(current));
+                writer.write('\n');
+            }
+            for (Map.Entry<String, PackEntry> e : index.entrySet()) {
+                writer.write(journalLine(e.getKey(), e.getValue()));
+                writer.write('\n');
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void appendJournal(String line) throws IOException {
+        if (journal == null) {
+            File file = new File(indexFile);
+            FileUtil.newFolder(file.getParentFile());
+            journal = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+        }
+        journal.write(line);
+        journal.write('\n');
+    }
+
+    private void flushJournal() throws IOException {
+        if (journal != null) {
+            journal.flush();
+        }
+    }
+
+    private void closeJournal() {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                log.error("索引文件关闭失败:{}", e.getMessage());
+            }
+            journal = null;
+        }
+    }
+
+    private static String containerLine(Container container) {
+        return "C\t" + container.group + "\t" + container.path + "\t" + container.length;
+    }
+
+    private static String journalLine(String key, PackEntry entry) {
+        return "P\t" + encode(key) + "\t" + entry.getGroup() + "\t" + entry.getPath() + "\t" + entry.getOffset()
+                + "\t" + entry.getLength() + "\t" + (entry.isPacked() ? "1" : "0");
+    }
+
+    private static String encode(String key) {
+        try {
+            return URLEncoder.encode(key, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String decode(String key) {
+        try {
+            return URLDecoder.decode(key, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 索引项
+     */
+    @Data
+    @AllArgsConstructor
+    public static class PackEntry {
+        private String group;
+        private String path;
+        private long offset;
+        private long length;
+        /**
+         * true表示位于共享容器中，false表示单独存储的文件
+         */
+        private boolean packed;
+
+        public String getFullPath() {
+            return group + "/" + path;
+        }
+    }
+
+    private static class PendingItem {
+        private final String key;
+        private final byte[] data;
+        private final PackEntry relocateFrom;
+
+        private PendingItem(String key, byte[] data, PackEntry relocateFrom) {
+            this.key = key;
+            this.data = data;
+            this.relocateFrom = relocateFrom;
+        }
+    }
+
+    private static class Container {
+        private final String group;
+        private final String path;
+        private long length;
+        /**
+         * 从日志恢复的容器在第一次追加前需要核对远程长度
+         */
+        private boolean verified;
+
+        private Container(String group, String path, long length) {
+            this.group = group;
+            this.path = path;
+            this.length = length;
+        }
+
+        private String getFullPath() {
+            return group + "/" + path;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package org.example.util;
+
+import com.github.tobato.fastdfs.domain.proto.storage.DownloadCallback;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 批量任务的带宽限制
+ * <p>
+ * 只对{@link TrafficLane#BULK}的上传和下载限速，交互请求不经过。同时受三级令牌桶限制：
+ * 全局、每个storage节点、每个任务，取其中最慢的一个。每次最多读16KB再扣令牌，流量平滑，不会读一大块再长时间停顿，
+ * 每次等待只有一个块的时间，连接和通道名额不会被长时间空占。
+ * storage节点由LaneConnectionManager在执行批量命令时设置、结束时清除，未启用连接通道时只有全局和任务限速生效。
+ * 各级速率都可以在运行中修改。
+ *
+ * @author Kent HAN
+ * @date 2026/10/19
+ */
+@Component
+public class BandwidthShaper {
+
+    private static final int CHUNK = 16 * 1024;
+
+    private static final ThreadLocal<InetSocketAddress> CURRENT_NODE = new ThreadLocal<>();
+
+    private static final ThreadLocal<TokenBucket> CURRENT_JOB = new ThreadLocal<>();
+
+    /**
+     * 全局限速，字节/秒，0为不限
+     */
+    @Value("${fdfs.bandwidth.global:0}")
+    private long globalBytesPerSecond;
+
+    /**
+     * 每个storage节点的默认限速
+     */
+    @Value("${fdfs.bandwidth.perNode:0}")
+    private long nodeBytesPerSecond;
+
+    /**
+     * 每个任务的默认限速
+     */
+    @Value("${fdfs.bandwidth.perJob:0}")
+    private long jobBytesPerSecond;
+
+    private TokenBucket global;
+
+    private final Map<String, TokenBucket> nodes = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        global = new TokenBucket(globalBytesPerSecond);
+    }
+
+    public void setGlobalBytesPerSecond(long bytesPerSecond) {
+        global.setBytesPerSecond(bytesPerSecond);
+    }
+
+    public long getGlobalBytesPerSecond() {
+        return global.getBytesPerSecond();
+    }
+
+    /**
+     * 修改所有节点的默认限速，单独设置过的节点一并修改
+     */
+    public void setNodeBytesPerSecond(long bytesPerSecond) {
+        nodeBytesPerSecond = bytesPerSecond;
+        for (TokenBucket bucket : nodes.values()) {
+            bucket.setBytesPerSecond(bytesPerSecond);
+        }
+    }
+
+    /**
+     * 单独设置一个节点的限速
+     *
+     * @param host storage节点ip
+     */
+    public void setNodeBytesPerSecond(String host, long bytesPerSecond) {
+        node(host).setBytesPerSecond(bytesPerSecond);
+    }
+
+    /**
+     * 按默认任务限速创建令牌桶，任务运行中可通过setBytesPerSecond调整
+     */
+    public TokenBucket newJob() {
+        return new TokenBucket(jobBytesPerSecond);
+    }
+
+    /**
+     * 以指定的任务限速执行，任务内各线程共用同一个令牌桶
+     */
+    public static <T> T callWithJob(TokenBucket job, Callable<T> task) throws Exception {
+        TokenBucket previous = CURRENT_JOB.get();
+        CURRENT_JOB.set(job);
+        try {
+            return task.call();
+        } finally {
+            CURRENT_JOB.set(previous);
+        }
+    }
+
+    public static void runWithJob(TokenBucket job, Runnable task) {
+        TokenBucket previous = CURRENT_JOB.get();
+        CURRENT_JOB.set(job);
+        try {
+            task.run();
+        } finally {
+            CURRENT_JOB.set(previous);
+        }
+    }
+
+    /**
+     * 设置当前线程正在访问的storage节点，为空表示结束，只在批量命令执行期间设置
+     */
+    public static void setCurrentNode(InetSocketAddress address) {
+        if (address == null) {
+            CURRENT_NODE.remove();
+        } else {
+            CURRENT_NODE.set(address);
+        }
+    }
+
+    /**
+     * 批量任务返回限速的输入流，其余原样返回
+     */
+    public InputStream throttle(InputStream in) {
+        if (TrafficLane.current() != TrafficLane.BULK) {
+            return in;
+        }
+        return new ThrottledInputStream(in, CURRENT_JOB.get());
+    }
+
+    /**
+     * 批量任务下载时对接收的数据流限速
+     */
+    public <T> DownloadCallback<T> throttle(DownloadCallback<T> callback) {
+        if (TrafficLane.current() != TrafficLane.BULK) {
+            return callback;
+        }
+        TokenBucket job = CURRENT_JOB.get();
+        return in -> callback.recv(new ThrottledInputStream(in, job));
+    }
+
+    private TokenBucket node(String host) {
+        return nodes.computeIfAbsent(host, h -> new TokenBucket(nodeBytesPerSecond));
+    }
+
+    private void acquire(TokenBucket job, long bytes) {
+        List<TokenBucket> buckets = new ArrayList<>(3);
+        buckets.add(global);
+        if (job != null) {
+            buckets.add(job);
+        }
+        InetSocketAddress address = CURRENT_NODE.get();
+        if (address != null && (nodeBytesPerSecond > 0 || nodes.containsKey(address.getHostString()))) {
+            buckets.add(node(address.getHostString()));
+        }
+        long wait = 0;
+        for (TokenBucket bucket : buckets) {
+            wait = Math.max(wait, bucket.reserve(bytes));
+        }
+        TokenBucket.park(wait);
+    }
+
+    private class ThrottledInputStream extends FilterInputStream {
+
+        private final TokenBucket job;
+
+        private ThrottledInputStream(InputStream in, TokenBucket job) {
+            super(in);
+            this.job = job;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                acquire(job, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, Math.min(len, CHUNK));
+            if (n > 0) {
+                acquire(job, n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, CHUNK));
+            if (skipped > 0) {
+                acquire(job, skipped);
+            }
+            return skipped;
+        }
+    }
+}
@@ -1,18 +1,31 @@
 package org.example.util;
 
-import com.github.tobato.fastdfs.domain.fdfs.FileInfo;
-import com.github.tobato.fastdfs.domain.fdfs.StorePath;
-import com.github.tobato.fastdfs.domain.fdfs.ThumbImageConfig;
+import com.github.tobato.fastdfs.domain.conn.FdfsConnectionManager;
+import com.github.tobato.fastdfs.domain.fdfs.*;
+import com.github.tobato.fastdfs.domain.proto.StatusConstants;
 import com.github.tobato.fastdfs.domain.proto.storage.DownloadByteArray;
+import com.github.tobato.fastdfs.domain.proto.storage.StorageDownloadCommand;
 import com.github.tobato.fastdfs.service.FastFileStorageClient;
+import com.github.tobato.fastdfs.service.TrackerClient;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FilenameUtils;
+import org.example.jfr.FdfsJfr;
+import org.example.jfr.JfrSpan;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * 使用FastDFS访问和存储文件
@@ -31,6 +44,18 @@ public class FastDfsUtils {
     @Autowired
     private ThumbImageConfig thumbImageConfig;
 
+    @Autowired
+    private FdfsHttpReader fdfsHttpReader;
+
+    @Autowired
+    private TrackerClient trackerClient;
+
+    @Autowired
+    private FdfsConnectionManager fdfsConnectionManager;
+
+    @Autowired
+    private BandwidthShaper bandwidthShaper;
+
     @Value("${fdfs.groupName}")
     private String groupName;
 
@@ -40,6 +65,88 @@ public class FastDfsUtils {
     @Value("${fdfs.fileDownUrl}")
     public String fileDownUrl;
 
+    /**
+     * 默认读取方式 storage/http
+     */
+    @Value("${fdfs.readEngine:storage}")
+    private String readEngine;
+
+    /**
+     * storage方式下载到本地时是否校验大小和CRC32
+     */
+    @Value("${fdfs.verifyCrc:false}")
+    private boolean verifyCrc;
+
+    /**
+     * 批量元数据操作的并发数
+     */
+    @Value("${fdfs.metadata.concurrency:16}")
+    private int metadataConcurrency;
+
+    @Value("${fdfs.metadata.cacheSize:10000}")
+    private long metadataCacheSize;
+
+    @Value("${fdfs.metadata.cacheSeconds:300}")
+    private long metadataCacheSeconds;
+
+    /**
+     * 热点小文件缓存总字节数，0为不缓存
+     */
+    @Value("${fdfs.hotCache.maxBytes:67108864}")
+    private long hotCacheMaxBytes;
+
+    @Value("${fdfs.hotCache.maxObjectBytes:262144}")
+    private long hotCacheMaxObjectBytes;
+
+    @Value("${fdfs.hotCache.minFrequency:2}")
+    private int hotCacheMinFrequency;
+
+    @Value("${fdfs.hotCache.ttlSeconds:600}")
+    private long hotCacheTtlSeconds;
+
+    private Cache<String, Set<MetaData>> metadataCache;
+
+    private HotObjectCache hotCache;
+
+    /**
+     * 同一文件的并发读取/下载只访问一次storage
+     */
+    private final SingleFlight<String, byte[]> readFlights = new SingleFlight<>();
+
+    private final SingleFlight<String, File> downloadFlights = new SingleFlight<>();
+
+    private ExecutorService metadataExecutor;
+
+    @PostConstruct
+    public void init() {
+        metadataCache = CacheBuilder.newBuilder()
+                .maximumSize(metadataCacheSize)
+                .expireAfterWrite(metadataCacheSeconds, TimeUnit.SECONDS)
+                .build();
+        metadataExecutor = new ThreadPoolExecutor(metadataConcurrency, metadataConcurrency, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "fdfs-metadata");
+            t.setDaemon(true);
+            return t;
+        });
+        ((ThreadPoolExecutor) metadataExecutor).allowCoreThreadTimeOut(true);
+        if (hotCacheMaxBytes > 0) {
+            hotCache = new HotObjectCache(hotCacheMaxBytes, hotCacheMaxObjectBytes, hotCacheMinFrequency, hotCacheTtlSeconds);
+        }
+    }
+
+    /**
+     * 热点小文件缓存，未开启时返回null
+     */
+    public HotObjectCache getHotCache() {
+        return hotCache;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        metadataExecutor.shutdownNow();
+    }
+
     /**
      * 判断文件或目录是否存在
      *
@@ -51,12 +158,15 @@ public class FastDfsUtils {
         if (filePath.contains(groupName)) {
             filePath = filePath.replace(groupName + "/", "");
         }
+        JfrSpan event = FdfsJfr.begin("query", groupName, filePath);
         FileInfo fileInfo;
         try {
             fileInfo = storageClient.queryFileInfo(groupName, filePath);
         } catch (Exception e) {
+            FdfsJfr.end(event, 0, false);
             return false;
         }
+        FdfsJfr.end(event, fileInfo == null ? 0 : fileInfo.getFileSize(), true);
         return fileInfo != null;
     }
 
@@ -68,18 +178,25 @@ public class FastDfsUtils {
      * @throws Exception
      */
     public boolean delFile(String fullRemoteFileName) throws Exception {
+        fullRemoteFileName = stripGroup(fullRemoteFileName);
+        JfrSpan event = FdfsJfr.begin("delete", groupName, fullRemoteFileName);
         boolean flag = false;
+        boolean success = false;
         try {
-            if (fullRemoteFileName.contains(groupName)) {
-                fullRemoteFileName = fullRemoteFileName.replace(groupName + "/", "");
-            }
             if (exists(fullRemoteFileName)) {
                 //删除文件服务器的文件信息
                 storageClient.deleteFile(groupName, fullRemoteFileName);
+                metadataCache.invalidate(fullRemoteFileName);
+                if (hotCache != null) {
+                    hotCache.invalidate(objectKey(fullRemoteFileName));
+                }
                 flag = true;
             }
+            success = true;
         } catch (Exception e) {
             throw new Exception("deleted remote exception by fileName(" + fullRemoteFileName + ")", e);
+        } finally {
+            FdfsJfr.end(event, 0, success);
         }
         return flag;
     }
@@ -133,11 +250,15 @@ public class FastDfsUtils {
      * @throws Exception
      */
     public String writeInputStreamToFile(File file) throws Exception {
+        JfrSpan event = FdfsJfr.begin("upload", groupName, file.getPath());
+        StorePath storePath = null;
         try (FileInputStream in = new FileInputStream(file)) {
-            StorePath storePath = storageClient.uploadFile(in, file.length(), FilenameUtils.getExtension(file.getName()), null);
+            storePath = storageClient.uploadFile(bandwidthShaper.throttle(in), file.length(), FilenameUtils.getExtension(file.getName()), null);
             return storePath.getFullPath();
         } catch (Exception e) {
             throw new Exception("upload remote path exception," + e.getMessage(), e);
+        } finally {
+            FdfsJfr.end(event, storePath == null ? null : storePath.getPath(), file.length(), storePath != null);
         }
     }
 
@@ -148,12 +269,15 @@ public class FastDfsUtils {
      * @throws Exception
      */
     public String writeInputStreamToFile(InputStream inputStream, long fileSize, String remoteFilename) throws Exception {
+        JfrSpan event = FdfsJfr.begin("upload", groupName, remoteFilename);
+        StorePath storePath = null;
         try {
-            StorePath storePath = storageClient.uploadFile(inputStream, fileSize, FilenameUtils.getExtension(remoteFilename), null);
+            storePath = storageClient.uploadFile(bandwidthShaper.throttle(inputStream), fileSize, FilenameUtils.getExtension(remoteFilename), null);
             return storePath.getFullPath();
         } catch (Exception e) {
             throw new Exception("upload remote path exception," + e.getMessage(), e);
         } finally {
+            FdfsJfr.end(event, storePath == null ? null : storePath.getPath(), fileSize, storePath != null);
             inputStream.close();
         }
     }
@@ -164,39 +288,136 @@ public class FastDfsUtils {
     }
 
     public boolean downloadToLocal(File file, String remoteDir) {
+        return downloadToLocal(file, remoteDir, ReadEngine.of(readEngine));
+    }
+
+    /**
+     * 下载到本地，指定读取方式
+     *
+     * @param file      本地文件
+     * @param remoteDir 远程文件路径
+     * @param engine    读取方式
+     * @return 是否下载成功
+     */
+    public boolean downloadToLocal(File file, String remoteDir, ReadEngine engine) {
+        JfrSpan event = FdfsJfr.begin("download", groupName, stripGroup(remoteDir));
+        boolean success = false;
+        try {
+            success = downloadShared(file, remoteDir, engine);
+            return success;
+        } finally {
+            FdfsJfr.end(event, file, success);
+        }
+    }
+
+    private boolean downloadShared(File file, String remoteDir, ReadEngine engine) {
+        String path = stripGroup(remoteDir);
+        boolean[] leader = new boolean[1];
+        File downloaded;
+        try {
+            downloaded = downloadFlights.execute(objectKey(path), () -> {
+                leader[0] = true;
+                return doDownloadToLocal(file, path, engine) ? file : null;
+            });
+        } catch (Exception e) {
+            log.error("download remote:{} to local:{} path exception error:{}", remoteDir, file.getPath(), e.getMessage());
+            return false;
+        }
+        if (leader[0] || downloaded == null || downloaded.getAbsoluteFile().equals(file.getAbsoluteFile())) {
+            return downloaded != null;
+        }
+        // 同一文件由其他线程下载到了别的本地路径，复制一份
+        File tmp = new File(file.getPath() + ".part");
+        try {
+            FileUtil.newFolder(file.getAbsoluteFile().getParentFile());
+            FileUtil.copyFile(downloaded, tmp);
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        } catch (IOException e) {
+            tmp.delete();
+            log.warn("copy shared download:{} to local:{} error:{}, download again", downloaded.getPath(), file.getPath(), e.getMessage());
+            return doDownloadToLocal(file, path, engine);
+        }
+    }
+
+    private boolean doDownloadToLocal(File file, String remoteDir, ReadEngine engine) {
+        if (engine == ReadEngine.HTTP) {
+            return downloadToLocalByHttp(file, remoteDir);
+        }
         // 先删 后下载
         FileUtil.delFile(file);
-        byte[] bytes = null;
-        boolean flag = false;
-        OutputStream outputStream = null;
+        if (remoteDir.contains(groupName)) {
+            remoteDir = remoteDir.replace(groupName + "/", "");
+        }
         try {
-            if (remoteDir.contains(groupName)) {
-                remoteDir = remoteDir.replace(groupName + "/", "");
+            FileInfo fileInfo = storageClient.queryFileInfo(groupName, remoteDir);
+            // 空文件与不存在同样视为失败，与原来一致
+            if (fileInfo == null || fileInfo.getFileSize() <= 0) {
+                log.error("download remote(" + remoteDir + ") to local exception, 文件系统无此文件");
+                return false;
             }
-            if (storageClient.queryFileInfo(groupName, remoteDir) != null) {
-                bytes = storageClient.downloadFile(groupName, remoteDir, new DownloadByteArray());
+            if (verifyCrc) {
+                return downloadVerified(file, remoteDir, fileInfo);
             }
-            // 创建目录
-            FileUtil.newFolder(file.getParentFile());
-            outputStream = new FileOutputStream(file);
-            if (bytes == null || bytes.length <= 0) {
+            storageClient.downloadFile(groupName, remoteDir, bandwidthShaper.throttle(new FileDownloadCallback(file)));
+            return true;
+        } catch (Exception e) {
+            log.error("download remote:{} to local:{} path exception error:{}", remoteDir, file.getPath(), e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 边下载边校验大小和CRC32，不一致时丢弃，换组内其他storage重新下载
+     * 先从tracker分配的storage下载，失败后依次尝试其余ACTIVE状态的storage
+     */
+    private boolean downloadVerified(File file, String remoteDir, FileInfo fileInfo) {
+        Set<InetSocketAddress> tried = new LinkedHashSet<>();
+        InetSocketAddress first = trackerClient.getFetchStorage(groupName, remoteDir).getInetSocketAddress();
+        tried.add(first);
+        if (downloadFrom(first, file, remoteDir, fileInfo)) {
+            return true;
+        }
+        for (StorageState state : trackerClient.listStorages(groupName)) {
+            if (state.getStatus() != StatusConstants.FDFS_STORAGE_STATUS_ACTIVE) {
+                continue;
+            }
+            InetSocketAddress node = new InetSocketAddress(state.getIpAddr(), state.getStoragePort());
+            if (tried.add(node) && downloadFrom(node, file, remoteDir, fileInfo)) {
+                return true;
+            }
+        }
+        log.error("download remote:{} to local:{} failed on all storages:{}", remoteDir, file.getPath(), tried);
+        return false;
+    }
+
+    private boolean downloadFrom(InetSocketAddress node, File file, String remoteDir, FileInfo fileInfo) {
+        try {
+            fdfsConnectionManager.executeFdfsCmd(node,
+                    new StorageDownloadCommand<>(groupName, remoteDir, bandwidthShaper.throttle(new FileDownloadCallback(file, fileInfo))));
+            return true;
+        } catch (Exception e) {
+            log.warn("download remote:{} from storage:{} error:{}", remoteDir, node, e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean downloadToLocalByHttp(File file, String remoteDir) {
+        // 先删 后下载
+        FileUtil.delFile(file);
+        if (remoteDir.contains(groupName)) {
+            remoteDir = remoteDir.replace(groupName + "/", "");
+        }
+        try {
+            if (!fdfsHttpReader.download(groupName, remoteDir, file)) {
                 log.error("download remote(" + remoteDir + ") to local exception, 文件系统无此文件");
                 return false;
             }
-            outputStream.write(bytes);
-            flag = true;
+            return true;
         } catch (Exception e) {
             log.error("download remote:{} to local:{} path exception error:{}", remoteDir, file.getPath(), e.getMessage());
-        } finally {
-            if (outputStream != null) {
-                try {
-                    outputStream.close();
-                } catch (IOException e) {
-                    log.error("文件流关闭失败:{}", e.getMessage());
-                }
-            }
+            return false;
         }
-        return flag;
     }
 
     /**
@@ -254,16 +475,88 @@ public class FastDfsUtils {
      * @throws Exception
      */
     public byte[] readFileToBytes(String filePath) throws Exception {
+        return readFileToBytes(filePath, ReadEngine.of(readEngine));
+    }
+
+    /**
+     * 传入文件路径 将文件转为字节，指定读取方式
+     *
+     * @param filePath
+     * @param engine   读取方式
+     * @return
+     * @throws Exception
+     */
+    public byte[] readFileToBytes(String filePath, ReadEngine engine) throws Exception {
+        JfrSpan event = FdfsJfr.begin("read", groupName, stripGroup(filePath));
         byte[] bytes = null;
-        String group = "group1";
         try {
-            if (storageClient.queryFileInfo(group, filePath) != null) {
-                bytes = storageClient.downloadFile(group, filePath, new DownloadByteArray());
-            }
+            bytes = loadFileToBytes(filePath, engine);
+            return bytes;
+        } finally {
+            FdfsJfr.end(event, bytes == null ? 0 : bytes.length, bytes != null);
+        }
+    }
+
+    private byte[] loadFileToBytes(String filePath, ReadEngine engine) throws Exception {
+        byte[] bytes = null;
+        String group = groupName;
+        String path = stripGroup(filePath);
+        String key = objectKey(path);
+        if (hotCache != null && (bytes = hotCache.get(key)) != null) {
+            return bytes;
+        }
+        boolean[] leader = new boolean[1];
+        try {
+            bytes = readFlights.execute(key, () -> {
+                leader[0] = true;
+                // 读取期间被删除时不再放入缓存
+                long generation = hotCache == null ? 0 : hotCache.generation();
+                byte[] loaded = null;
+                if (engine == ReadEngine.HTTP) {
+                    loaded = fdfsHttpReader.readBytes(group, path);
+                } else if (storageClient.queryFileInfo(group, path) != null) {
+                    loaded = storageClient.downloadFile(group, path, new DownloadByteArray());
+                }
+                if (hotCache != null && loaded != null) {
+                    hotCache.offer(key, loaded, generation);
+                }
+                return loaded;
+            });
         } catch (Exception e) {
             throw new Exception("download remote(" + filePath + ") path exception", e);
         }
-        return bytes;
+        // 其他线程共享的结果复制一份，互不影响
+        return leader[0] || bytes == null ? bytes : bytes.clone();
+    }
+
+    /**
+     * 按偏移读取文件片段
+     *
+     * @param filePath 远程文件路径
+     * @param offset   起始偏移
+     * @param length   读取长度
+     * @param engine   读取方式
+     * @return 文件片段
+     * @throws Exception
+     */
+    public byte[] readRangeToBytes(String filePath, long offset, long length, ReadEngine engine) throws Exception {
+        if (filePath.contains(groupName)) {
+            filePath = filePath.replace(groupName + "/", "");
+        }
+        JfrSpan event = FdfsJfr.begin("range", groupName, filePath);
+        byte[] bytes = null;
+        try {
+            if (engine == ReadEngine.HTTP) {
+                bytes = fdfsHttpReader.readRange(groupName, filePath, offset, length);
+            } else {
+                bytes = storageClient.downloadFile(groupName, filePath, offset, length, new DownloadByteArray());
+            }
+            return bytes;
+        } catch (Exception e) {
+            throw new Exception("download remote(" + filePath + ") range exception", e);
+        } finally {
+            FdfsJfr.end(event, bytes == null ? 0 : bytes.length, bytes != null);
+        }
     }
 
     /**
@@ -278,6 +571,140 @@ public class FastDfsUtils {
         return writeInputStreamToFile(in, bytes.length, remoteName);
     }
 
+    /**
+     * 获取文件元数据，优先读取缓存
+     *
+     * @param filePath 远程文件路径
+     * @return 元数据
+     * @throws Exception
+     */
+    public Set<MetaData> getMetadata(String filePath) throws Exception {
+        String path = stripGroup(filePath);
+        try {
+            return metadataCache.get(path, () -> loadMetadata(path));
+        } catch (ExecutionException e) {
+            throw new Exception("get metadata(" + filePath + ") exception", e.getCause());
+        }
+    }
+
+    /**
+     * 批量获取文件元数据，未命中缓存的文件并行查询
+     * 查询失败的文件不出现在结果中
+     *
+     * @param filePaths 远程文件路径
+     * @return 路径 -> 元数据，路径与传入的一致
+     */
+    public Map<String, Set<MetaData>> getMetadata(Collection<String> filePaths) {
+        Map<String, Set<MetaData>> result = new LinkedHashMap<>();
+        Map<String, Future<Set<MetaData>>> pending = new LinkedHashMap<>();
+        for (String filePath : filePaths) {
+            String path = stripGroup(filePath);
+            Set<MetaData> cached = metadataCache.getIfPresent(path);
+            if (cached != null) {
+                result.put(filePath, cached);
+            } else if (!pending.containsKey(filePath)) {
+                pending.put(filePath, metadataExecutor.submit(() -> metadataCache.get(path, () -> loadMetadata(path))));
+            }
+        }
+        for (Map.Entry<String, Future<Set<MetaData>>> e : pending.entrySet()) {
+            try {
+                result.put(e.getKey(), e.getValue().get());
+            } catch (Exception ex) {
+                log.error("get metadata:{} error:{}", e.getKey(), ex.getMessage());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 批量覆盖文件元数据
+     *
+     * @param metadata 路径 -> 元数据
+     * @throws Exception 任一文件失败时抛出，其余文件仍会执行
+     */
+    public void overwriteMetadata(Map<String, Set<MetaData>> metadata) throws Exception {
+        runMetadataBatch(metadata, (path, values) -> {
+            storageClient.overwriteMetadata(groupName, path, values);
+            metadataCache.put(path, Collections.unmodifiableSet(new HashSet<>(values)));
+        });
+    }
+
+    /**
+     * 批量合并文件元数据，同名项覆盖，其余保留
+     *
+     * @param metadata 路径 -> 元数据
+     * @throws Exception 任一文件失败时抛出，其余文件仍会执行
+     */
+    public void mergeMetadata(Map<String, Set<MetaData>> metadata) throws Exception {
+        runMetadataBatch(metadata, (path, values) -> {
+            storageClient.mergeMetadata(groupName, path, values);
+            // 原子地在缓存的当前值上合并，并发合并同一文件时互不覆盖
+            metadataCache.asMap().computeIfPresent(path, (k, cached) -> {
+                Map<String, MetaData> merged = new LinkedHashMap<>();
+                for (MetaData m : cached) {
+                    merged.put(m.getName(), m);
+                }
+                for (MetaData m : values) {
+                    merged.put(m.getName(), m);
+                }
+                return Collections.unmodifiableSet(new HashSet<>(merged.values()));
+            });
+        });
+    }
+
+    private interface MetadataWriter {
+        void write(String path, Set<MetaData> values) throws Exception;
+    }
+
+    private void runMetadataBatch(Map<String, Set<MetaData>> metadata, MetadataWriter writer) throws Exception {
+        Map<String, Future<?>> futures = new LinkedHashMap<>();
+        for (Map.Entry<String, Set<MetaData>> e : metadata.entrySet()) {
+            String path = stripGroup(e.getKey());
+            futures.put(e.getKey(), metadataExecutor.submit(() -> {
+                try {
+                    writer.write(path, e.getValue());
+                } catch (Exception ex) {
+                    // 写入结果不确定，缓存作废
+                    metadataCache.invalidate(path);
+                    throw ex;
+                }
+                return null;
+            }));
+        }
+        List<String> failed = new ArrayList<>();
+        Exception first = null;
+        for (Map.Entry<String, Future<?>> e : futures.entrySet()) {
+            try {
+                e.getValue().get();
+            } catch (ExecutionException ex) {
+                failed.add(e.getKey());
+                first = first == null ? ex : first;
+            }
+        }
+        if (!failed.isEmpty()) {
+            throw new Exception("update metadata exception by fileName" + failed, first.getCause());
+        }
+    }
+
+    private Set<MetaData> loadMetadata(String path) {
+        Set<MetaData> metadata = storageClient.getMetadata(groupName, path);
+        return metadata == null ? Collections.emptySet() : Collections.unmodifiableSet(new HashSet<>(metadata));
+    }
+
+    /**
+     * 热点缓存及合并请求使用的key，组名加不带组名的路径
+     */
+    private String objectKey(String filePath) {
+        return groupName + "/" + stripGroup(filePath);
+    }
+
+    private String stripGroup(String filePath) {
+        if (filePath.contains(groupName)) {
+            return filePath.replace(groupName + "/", "");
+        }
+        return filePath;
+    }
+
     /**
      * 字节转换InputStream
      *
@@ -0,0 +1,214 @@
+package org.example.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 通过storage节点的nginx模块读取文件
+ * <p>
+ * 使用keep-alive连接池，每个storage节点的连接数有上限，读流量不再占用fdfs协议连接池。
+ *
+ * @author Kent HAN
+ * @date 2026/10/19
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(value = "fdfs.groupName")
+public class FdfsHttpReader {
+
+    @Value("${fdfs.serverUrl}")
+    private String serverUrl;
+
+    @Value("${fdfs.http.maxTotal:200}")
+    private int maxTotal;
+
+    @Value("${fdfs.http.maxPerRoute:50}")
+    private int maxPerRoute;
+
+    @Value("${fdfs.http.connectTimeout:${fdfs.connect-timeout:600}}")
+    private int connectTimeout;
+
+    @Value("${fdfs.http.soTimeout:${fdfs.so-timeout:1500}}")
+    private int soTimeout;
+
+    @Value("${fdfs.http.idleSeconds:30}")
+    private int idleSeconds;
+
+    private PoolingHttpClientConnectionManager connectionManager;
+
+    private CloseableHttpClient httpClient;
+
+    @PostConstruct
+    public void init() {
+        connectionManager = new PoolingHttpClientConnectionManager(idleSeconds, TimeUnit.SECONDS);
+        connectionManager.setMaxTotal(maxTotal);
+        connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeout)
+                .setSocketTimeout(soTimeout)
+                .setConnectionRequestTimeout(connectTimeout)
+                .build();
+        httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .evictIdleConnections(idleSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    @PreDestroy
+    public void destroy() throws IOException {
+        if (httpClient != null) {
+            httpClient.close();
+        }
+    }
+
+    /**
+     * 拼接文件访问地址
+     *
+     * @param group 组名
+     * @param path  不带组名的路径
+     * @return 访问地址
+     */
+    public String buildUrl(String group, String path) {
+        String base = serverUrl.endsWith("/") ? serverUrl : serverUrl + "/";
+        return base + group + "/" + path;
+    }
+
+    /**
+     * 读取整个文件
+     *
+     * @return 文件内容，不存在返回null
+     * @throws IOException 网络错误或404以外的错误状态
+     */
+    public byte[] readBytes(String group, String path) throws IOException {
+        HttpGet get = new HttpGet(buildUrl(group, path));
+        try (CloseableHttpResponse response = httpClient.execute(get)) {
+            int status = response.getStatusLine().getStatusCode();
+            if (status == HttpStatus.SC_OK) {
+                return EntityUtils.toByteArray(response.getEntity());
+            }
+            return failedStatus(get, response);
+        }
+    }
+
+    /**
+     * 按Range读取文件片段
+     * <p>
+     * 正常返回206；nginx未开启Range支持时返回200和整个文件，此时从响应中截取请求的区间，
+     * 读够后直接关闭连接，不读取剩余内容。
+     *
+     * @param offset 起始偏移
+     * @param length 读取长度
+     * @return 文件片段，超出文件末尾的部分不返回，不存在返回null
+     * @throws IOException 网络错误、404以外的错误状态或返回的区间与请求不符
+     */
+    public byte[] readRange(String group, String path, long offset, long length) throws IOException {
+        HttpGet get = new HttpGet(buildUrl(group, path));
+        get.setHeader(HttpHeaders.RANGE, "bytes=" + offset + "-" + (offset + length - 1));
+        try (CloseableHttpResponse response = httpClient.execute(get)) {
+            int status = response.getStatusLine().getStatusCode();
+            if (status == HttpStatus.SC_PARTIAL_CONTENT) {
+                Header contentRange = response.getFirstHeader(HttpHeaders.CONTENT_RANGE);
+                if (contentRange == null || !contentRange.getValue().startsWith("bytes " + offset + "-")) {
+                    get.abort();
+                    throw new IOException("http range " + get.getURI() + " unexpected content-range:"
+                            + (contentRange == null ? null : contentRange.getValue()) + " for offset:" + offset);
+                }
+                return EntityUtils.toByteArray(response.getEntity());
+            }
+            if (status == HttpStatus.SC_OK) {
+                try (InputStream in = response.getEntity().getContent()) {
+                    IOUtils.skip(in, offset);
+                    byte[] bytes = IOUtils.toByteArray(new BoundedInputStream(in, length));
+                    // 丢弃剩余内容，不复用该连接
+                    get.abort();
+                    return bytes;
+                }
+            }
+            if (status == HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE) {
+                EntityUtils.consume(response.getEntity());
+                return new byte[0];
+            }
+            return failedStatus(get, response);
+        }
+    }
+
+    /**
+     * 下载到本地文件，先写临时文件再改名
+     *
+     * @return 是否下载成功，远程不存在返回false
+     */
+    public boolean download(String group, String path, File target) throws IOException {
+        HttpGet get = new HttpGet(buildUrl(group, path));
+        try (CloseableHttpResponse response = httpClient.execute(get)) {
+            HttpEntity entity = response.getEntity();
+            if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
+                failedStatus(get, response);
+                return false;
+            }
+            FileUtil.newFolder(target.getAbsoluteFile().getParentFile());
+            File tmp = new File(target.getPath() + ".part");
+            try (InputStream in = entity.getContent();
+                 ReadableByteChannel source = Channels.newChannel(in);
+                 FileOutputStream out = new FileOutputStream(tmp);
+                 FileChannel channel = out.getChannel()) {
+                long position = 0;
+                long n;
+                // 源是包装输入流的通道，transferFrom仍经过堆内缓冲复制，并非零拷贝，这里只是按1MB分块写入
+                while ((n = channel.transferFrom(source, position, 1 << 20)) > 0) {
+                    position += n;
+                }
+            } catch (IOException e) {
+                tmp.delete();
+                throw e;
+            }
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        }
+    }
+
+    public String getPoolStats() {
+        return connectionManager.getTotalStats().toString();
+    }
+
+    /**
+     * 处理非成功响应，404返回null，其余状态抛出IOException
+     */
+    private static byte[] failedStatus(HttpGet get, CloseableHttpResponse response) throws IOException {
+        int status = response.getStatusLine().getStatusCode();
+        EntityUtils.consume(response.getEntity());
+        if (status == HttpStatus.SC_NOT_FOUND) {
+            return null;
+        }
+        log.error("http read {} status:{}", get.getURI(), status);
+        throw new IOException("http read " + get.getURI() + " status:" + status);
+    }
+}
@@ -0,0 +1,352 @@
+package org.example.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 按路径复用的缓冲追加写入器
+ * <p>
+ * 写入先进入内存环形缓冲，后台线程按字节数或时间阈值整批写入文件（group commit），
+ * 文件句柄长期保持打开。每个路径一把锁，不同文件之间互不阻塞。
+ * JVM退出时通过shutdown hook刷盘并关闭。
+ *
+ * @author Kent HAN
+ * @date 2026/10/19
+ */
+@Slf4j
+public class FileAppender implements Closeable {
+
+    /**
+     * 刷盘策略
+     */
+    public enum FsyncPolicy {
+        /**
+         * 只写入操作系统缓存
+         */
+        NONE,
+        /**
+         * 每批写入后fsync
+         */
+        BATCH,
+        /**
+         * 距上次fsync超过间隔时才fsync，未到间隔的数据最迟在间隔到期时由后台线程fsync
+         */
+        INTERVAL
+    }
+
+    public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+    public static final int DEFAULT_FLUSH_BYTES = 64 * 1024;
+
+    public static final long DEFAULT_FLUSH_MILLIS = 200;
+
+    private static final ConcurrentMap<String, FileAppender> APPENDERS = new ConcurrentHashMap<>();
+
+    private static final ScheduledExecutorService FLUSHER = Executors.newScheduledThreadPool(
+            Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2)), r -> {
+                Thread t = new Thread(r, "file-appender-flusher");
+                t.setDaemon(true);
+                return t;
+            });
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(FileAppender::closeAll, "file-appender-shutdown"));
+    }
+
+    private final String path;
+
+    private final FileChannel channel;
+
+    private final byte[] ring;
+
+    private final byte[] scratch;
+
+    private final int flushBytes;
+
+    private final FsyncPolicy fsyncPolicy;
+
+    private final long fsyncMillis;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition notFull = lock.newCondition();
+
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    private final AtomicBoolean fsyncScheduled = new AtomicBoolean();
+
+    private final ScheduledFuture<?> timer;
+
+    private int head;
+
+    private int size;
+
+    private long lastFsync = System.currentTimeMillis();
+
+    /**
+     * 已写入但尚未fsync
+     */
+    private boolean dirty;
+
+    private volatile boolean closed;
+
+    private FileAppender(String path, int bufferSize, int flushBytes, long flushMillis,
+                         FsyncPolicy fsyncPolicy, long fsyncMillis) throws IOException {
+        File file = new File(path);
+        FileUtil.newFolder(file.getAbsoluteFile().getParentFile());
+        this.path = path;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        this.ring = new byte[bufferSize];
+        this.scratch = new byte[bufferSize];
+        this.flushBytes = Math.min(flushBytes, bufferSize);
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncMillis = fsyncMillis;
+        this.timer = FLUSHER.scheduleWithFixedDelay(this::flushQuietly, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 获取路径对应的写入器，不存在时使用默认参数创建
+     */
+    public static FileAppender of(String path) {
+        return of(path, DEFAULT_BUFFER_SIZE, DEFAULT_FLUSH_BYTES, DEFAULT_FLUSH_MILLIS, FsyncPolicy.NONE, 0);
+    }
+
+    /**
+     * 获取路径对应的写入器，参数只在首次创建时生效
+     *
+     * @param path        文件路径
+     * @param bufferSize  环形缓冲字节数，写满时写入方等待
+     * @param flushBytes  缓冲达到该字节数时触发写入
+     * @param flushMillis 定时写入间隔
+     * @param fsyncPolicy 刷盘策略
+     * @param fsyncMillis INTERVAL策略下的fsync间隔
+     */
+    public static FileAppender of(String path, int bufferSize, int flushBytes, long flushMillis,
+                                  FsyncPolicy fsyncPolicy, long fsyncMillis) {
+        String key = new File(path).getAbsolutePath();
+        return APPENDERS.computeIfAbsent(key, k -> {
+            try {
+                return new FileAppender(k, bufferSize, flushBytes, flushMillis, fsyncPolicy, fsyncMillis);
+            } catch (IOException e) {
+                throw new IllegalStateException("open appender(" + k + ") error", e);
+            }
+        });
+    }
+
+    /**
+     * 关闭全部写入器
+     */
+    public static void closeAll() {
+        for (FileAppender appender : new ArrayList<>(APPENDERS.values())) {
+            try {
+                appender.close();
+            } catch (IOException e) {
+                log.error("close appender:{} error:{}", appender.path, e.getMessage());
+            }
+        }
+    }
+
+    public void append(String content) throws IOException {
+        append(content.getBytes());
+    }
+
+    /**
+     * 追加写入，单次写入的内容在文件中保持连续
+     */
+    public void append(byte[] data) throws IOException {
+        if (data.length > ring.length) {
+            // 超过缓冲容量的大块数据直接写入
+            flushLock.lock();
+            try {
+                ensureOpen();
+                flush();
+                writeFully(ByteBuffer.wrap(data));
+                sync();
+            } finally {
+                flushLock.unlock();
+            }
+            return;
+        }
+        boolean trigger;
+        lock.lock();
+        try {
+            while (ring.length - size < data.length) {
+                ensureOpen();
+                scheduleFlush();
+                notFull.awaitUninterruptibly();
+            }
+            ensureOpen();
+            int tail = (head + size) % ring.length;
+            int first = Math.min(data.length, ring.length - tail);
+            System.arraycopy(data, 0, ring, tail, first);
+            System.arraycopy(data, first, ring, 0, data.length - first);
+            size += data.length;
+            trigger = size >= flushBytes;
+        } finally {
+            lock.unlock();
+        }
+        if (trigger) {
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * 将缓冲中的数据写入文件
+     */
+    public void flush() throws IOException {
+        flushLock.lock();
+        try {
+            flushScheduled.set(false);
+            int n;
+            lock.lock();
+            try {
+                n = size;
+                int first = Math.min(n, ring.length - head);
+                System.arraycopy(ring, head, scratch, 0, first);
+                System.arraycopy(ring, 0, scratch, first, n - first);
+                head = (head + n) % ring.length;
+                size = 0;
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            if (n > 0) {
+                writeFully(ByteBuffer.wrap(scratch, 0, n));
+                sync();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flushLock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            timer.cancel(false);
+            // 先置关闭标记再做最后一次写入，之后的append不会再进入缓冲
+            lock.lock();
+            try {
+                closed = true;
+            } finally {
+                lock.unlock();
+            }
+            flush();
+            if (fsyncPolicy != FsyncPolicy.NONE) {
+                channel.force(false);
+            }
+            channel.close();
+        } finally {
+            APPENDERS.remove(path, this);
+            flushLock.unlock();
+            lock.lock();
+            try {
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * 写入后按策略fsync，必须持有flushLock
+     */
+    private void sync() throws IOException {
+        if (fsyncPolicy == FsyncPolicy.BATCH) {
+            channel.force(false);
+        } else if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            long now = System.currentTimeMillis();
+            long elapsed = now - lastFsync;
+            if (elapsed >= fsyncMillis) {
+                channel.force(false);
+                lastFsync = now;
+                dirty = false;
+            } else {
+                dirty = true;
+                // 之后没有新的写入时，也在间隔到期时fsync
+                if (fsyncScheduled.compareAndSet(false, true)) {
+                    FLUSHER.schedule(this::fsyncQuietly, fsyncMillis - elapsed, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+    }
+
+    private void fsyncQuietly() {
+        flushLock.lock();
+        try {
+            fsyncScheduled.set(false);
+            if (closed || !dirty) {
+                return;
+            }
+            channel.force(false);
+            lastFsync = System.currentTimeMillis();
+            dirty = false;
+        } catch (IOException e) {
+            log.error("fsync appender:{} error:{}", path, e.getMessage());
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 是否有已写入文件但尚未fsync的数据
+     */
+    boolean isDirty() {
+        flushLock.lock();
+        try {
+            return dirty;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            FLUSHER.execute(this::flushQuietly);
+        }
+    }
+
+    private void flushQuietly() {
+        if (closed) {
+            return;
+        }
+        try {
+            flush();
+        } catch (IOException e) {
+            log.error("flush appender:{} error:{}", path, e.getMessage());
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("appender(" + path + ") closed");
+        }
+    }
+}
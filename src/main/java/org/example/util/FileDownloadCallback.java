@@ -0,0 +1,112 @@
+package org.example.util;
+
+import com.github.tobato.fastdfs.domain.fdfs.FileInfo;
+import com.github.tobato.fastdfs.domain.proto.storage.DownloadCallback;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+
+/**
+ * 以流的方式把下载内容写入本地文件
+ * <p>
+ * 先写同目录下的.part临时文件，完整接收后再改名，不会留下半个文件，也不会把整个文件读入内存。
+ * 临时文件名每次不同，同时下载到同一个目标的任务互不覆盖，最后完成的改名生效。
+ * 接收的同时累计CRC32，传入FileInfo时在改名前校验大小和CRC32，不一致则删除临时文件并抛出{@link ChecksumException}，
+ * 不需要写完后再把文件读一遍。
+ *
+ * @author Kent HAN
+ * @date 2026/10/19
+ */
+public class FileDownloadCallback implements DownloadCallback<Long> {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File target;
+
+    private final FileInfo expected;
+
+    private long crc32;
+
+    public FileDownloadCallback(File target) {
+        this(target, null);
+    }
+
+    /**
+     * @param target   本地文件
+     * @param expected 远程文件信息，为空时不校验
+     */
+    public FileDownloadCallback(File target, FileInfo expected) {
+        this.target = target;
+        this.expected = expected;
+    }
+
+    /**
+     * @return 写入的字节数
+     */
+    @Override
+    public Long recv(InputStream in) throws IOException {
+        FileUtil.newFolder(target.getAbsoluteFile().getParentFile());
+        File tmp = Files.createTempFile(target.getAbsoluteFile().getParentFile().toPath(), target.getName() + ".", ".part").toFile();
+        CRC32 crc = new CRC32();
+        long total = 0;
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+                crc.update(buffer, 0, n);
+                total += n;
+            }
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+        crc32 = crc.getValue();
+        if (expected != null) {
+            try {
+                verify(total);
+            } catch (ChecksumException e) {
+                tmp.delete();
+                throw e;
+            }
+        }
+        Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return total;
+    }
+
+    /**
+     * @return 最近一次接收内容的CRC32
+     */
+    public long getCrc32() {
+        return crc32;
+    }
+
+    private void verify(long total) throws ChecksumException {
+        if (total != expected.getFileSize()) {
+            throw new ChecksumException("size mismatch, expected " + expected.getFileSize() + " but received " + total);
+        }
+        // 服务端未给出crc32(为0)时只校验大小
+        long expectedCrc = expected.getCrc32() & 0xFFFFFFFFL;
+        if (expectedCrc != 0 && expectedCrc != crc32) {
+            throw new ChecksumException(String.format("crc32 mismatch, expected %08x but received %08x", expectedCrc, crc32));
+        }
+    }
+
+    /**
+     * 下载内容与远程文件信息不一致
+     */
+    public static class ChecksumException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        public ChecksumException(String message) {
+            super(message);
+        }
+    }
+}
@@ -2,13 +2,15 @@ package org.example.util;
 
 import com.google.common.collect.Lists;
 import lombok.extern.slf4j.Slf4j;
+import org.example.jfr.FdfsJfr;
+import org.example.jfr.JfrSpan;
 
 import java.io.*;
 import java.net.URL;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Properties;
+import java.util.zip.CRC32;
 
 /**
  * 文件操作帮助类
@@ -123,6 +125,7 @@ public class FileUtil {
      * @return boolean
      */
     public static boolean copyFile(String oldPath, String newPath) {
+        JfrSpan event = FdfsJfr.beginFile("copy", oldPath, newPath);
         boolean flag = false;
         try {
             int byteSum = 0;
@@ -144,6 +147,8 @@ public class FileUtil {
         } catch (Exception e) {
             System.out.println("复制单个文件操作出错");
             e.printStackTrace();
+        } finally {
+            FdfsJfr.endFile(event, new File(newPath));
         }
         return flag;
     }
@@ -156,41 +161,7 @@ public class FileUtil {
      * @return boolean
      */
     public static boolean copyFolder(String oldPath, String newPath) {
-        boolean flag = false;
-        try {
-            (new File(newPath)).mkdirs(); //如果文件夹不存在 则建立新文件夹
-            File a = new File(oldPath);
-            String[] file = a.list();
-            File temp = null;
-            for (String aFile : file) {
-                if (oldPath.endsWith(File.separator)) {
-                    temp = new File(oldPath + aFile);
-                } else {
-                    temp = new File(oldPath + File.separator + aFile);
-                }
-
-                if (temp.isFile()) {
-                    FileInputStream input = new FileInputStream(temp);
-                    FileOutputStream output = new FileOutputStream(newPath + "/" + (temp.getName()));
-                    byte[] b = new byte[1024 * 5];
-                    int len;
-                    while ((len = input.read(b)) != -1) {
-                        output.write(b, 0, len);
-                    }
-                    output.flush();
-                    output.close();
-                    input.close();
-                }
-                if (temp.isDirectory()) {//如果是子文件夹
-                    copyFolder(oldPath + "/" + aFile, newPath + "/" + aFile);
-                }
-            }
-            flag = true;
-        } catch (Exception e) {
-            System.out.println("复制整个文件夹内容操作出错");
-            e.printStackTrace();
-        }
-        return flag;
+        return copyFolder(oldPath, newPath, null);
     }
 
     /**
@@ -202,6 +173,20 @@ public class FileUtil {
      * @return boolean
      */
     public static boolean copyFolder(String oldPath, String newPath, String filterDir) {
+        JfrSpan event = FdfsJfr.beginFile("copyFolder", oldPath, newPath);
+        long[] copied = new long[2];
+        boolean flag = copyFolder(oldPath, newPath, filterDir, copied);
+        FdfsJfr.endFile(event, copied[0], (int) copied[1]);
+        return flag;
+    }
+
+    /**
+     * 递归复制，整个目录只记录一个事件
+     *
+     * @param filterDir 过滤目录名称，为空不过滤
+     * @param copied    累计复制的字节数和文件数
+     */
+    private static boolean copyFolder(String oldPath, String newPath, String filterDir, long[] copied) {
         boolean flag = false;
         try {
             (new File(newPath)).mkdirs(); //如果文件夹不存在 则建立新文件夹
@@ -222,14 +207,16 @@ public class FileUtil {
                     int len;
                     while ((len = input.read(b)) != -1) {
                         output.write(b, 0, len);
+                        copied[0] += len;
                     }
                     output.flush();
                     output.close();
                     input.close();
+                    copied[1]++;
                 }
                 if (temp.isDirectory()) {//如果是子文件夹
                     if (!aFile.equals(filterDir)) {
-                        copyFolder(oldPath + "/" + aFile, newPath + "/" + aFile, filterDir);
+                        copyFolder(oldPath + "/" + aFile, newPath + "/" + aFile, filterDir, copied);
                     }
                 }
             }
@@ -292,6 +279,7 @@ public class FileUtil {
      * @throws IOException
      */
     public static void copyFile(File sourceFile, File targetFile) throws IOException {
+        JfrSpan event = FdfsJfr.beginFile("copy", sourceFile.getPath(), targetFile.getPath());
         BufferedInputStream inBuff = null;
         BufferedOutputStream outBuff = null;
         try {
@@ -317,6 +305,7 @@ public class FileUtil {
             if (outBuff != null) {
                 outBuff.close();
             }
+            FdfsJfr.endFile(event, targetFile);
         }
     }
 
@@ -398,6 +387,7 @@ public class FileUtil {
         if (!(file.exists() && file.isFile())) {
             throw new IllegalArgumentException("The remote not exist or not a remote");
         }
+        JfrSpan event = FdfsJfr.beginFile("read", file.getPath(), null);
         FileInputStream fis = null;
         byte[] content = null;
         try {
@@ -418,6 +408,7 @@ public class FileUtil {
                 fis = null;
             }
         }
+        FdfsJfr.endFile(event, content == null ? 0 : content.length, 1);
         return content;
     }
 
@@ -447,23 +438,54 @@ public class FileUtil {
 
     }
 
+    /**
+     * 缓冲追加写入，适合高频写日志类文件
+     * 数据先进入内存缓冲，由后台线程批量写入，文件句柄复用，需要立即落盘时调用 FileAppender.of(path).flush()
+     *
+     * @param txtPath 文件路径
+     * @param content 写入内容
+     */
+    public static void appendBuffered(String txtPath, String content) {
+        try {
+            FileAppender.of(txtPath).append(content);
+        } catch (Exception e) {
+            log.error("追加写入文件出错:{}", txtPath, e);
+        }
+    }
+
     /**
      * 将saveProperties保存为文件
+     * 内容缓存在PropertiesStore中，返回前写入文件，写入为临时文件加原子改名；文件不存在时报错
      *
      * @param filePath
      * @param parameterName
      * @param parameterValue
      */
     public static void saveProperties(String filePath, String parameterName, String parameterValue) {
-        Properties prop = new Properties();
         try {
-            InputStream fis = new FileInputStream(filePath);
-            prop.load(fis);
-            OutputStream fos = new FileOutputStream(filePath);
-            prop.setProperty(parameterName, parameterValue);
-            prop.store(fos, "Update '" + parameterName + "' value");
-            fis.close();
-        } catch (IOException e) {
+            if (!new File(filePath).isFile()) {
+                throw new FileNotFoundException(filePath);
+            }
+            PropertiesStore store = PropertiesStore.of(filePath);
+            store.set(parameterName, parameterValue);
+            store.flush();
+        } catch (Exception e) {
+            System.err.println("Visit " + filePath + " for updating " + parameterName + " value error");
+        }
+    }
+
+    /**
+     * 延迟保存properties，短时间内的多次修改合并为一次写入，适合高频更新
+     * 返回时文件可能尚未修改，文件不存在时创建，需要立即写入时调用 PropertiesStore.of(filePath).flush()
+     *
+     * @param filePath       文件路径
+     * @param parameterName  参数名
+     * @param parameterValue 参数值
+     */
+    public static void savePropertiesDebounced(String filePath, String parameterName, String parameterValue) {
+        try {
+            PropertiesStore.of(filePath).set(parameterName, parameterValue);
+        } catch (Exception e) {
             System.err.println("Visit " + filePath + " for updating " + parameterName + " value error");
         }
     }
@@ -548,6 +570,7 @@ public class FileUtil {
      * @return
      */
     public static String readFile(String path) {
+        JfrSpan event = FdfsJfr.beginFile("read", path, null);
         BufferedReader reader = null;
         StringBuilder lastStr = new StringBuilder();
         try {
@@ -570,10 +593,12 @@ public class FileUtil {
                 }
             }
         }
+        FdfsJfr.endFile(event, new File(path));
         return lastStr.toString();
     }
 
     public static List<File> listFiles(File path) {
+        JfrSpan event = FdfsJfr.beginFile("list", path.getPath(), null);
         List<File> result = Lists.newLinkedList();
         List<File> root = Lists.newLinkedList();
         if (path.isDirectory()) {
@@ -587,9 +612,29 @@ public class FileUtil {
                 root.addAll(Arrays.asList(file.listFiles()));
             }
         }
+        FdfsJfr.endFile(event, 0, result.size());
         return result;
     }
 
+    /**
+     * 计算文件CRC32
+     *
+     * @param file
+     * @return CRC32值
+     * @throws IOException
+     */
+    public static long crc32(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, n);
+            }
+        }
+        return crc.getValue();
+    }
+
     /**
      * 获取某个文件总行数
      *
@@ -0,0 +1,250 @@
+package org.example.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 小文件热点缓存
+ * <p>
+ * 按总字节数限制容量(Guava按段淘汰，容量为近似值)，只接收小于maxObjectBytes的对象。
+ * 用计数草图(count-min sketch)统计最近的访问频率，访问次数达到minFrequency才放入缓存，
+ * 只读一次的文件不会把热点挤出去；计数定期减半，旧的热度会逐渐消退。
+ * 缓存内容在ttlSeconds后过期，appender文件被追加修改后最迟在此时间后读到新内容。
+ * 读取开始前取{@link #generation()}，放入时如果该key在此之后被作废过则不放入，
+ * 避免读取期间文件被删除、读取结束后又把旧内容放回缓存。作废记录按key的hash分槽保存，冲突时只会少缓存一次。
+ *
+ * @author Kent HAN
+ * @date 2026/10/19
+ */
+public class HotObjectCache {
+
+    private static final int STRIPES = 1024;
+
+    private final Cache<String, byte[]> cache;
+
+    private final FrequencySketch sketch;
+
+    private final long maxObjectBytes;
+
+    private final int minFrequency;
+
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * 每个槽最近一次作废时的代数
+     */
+    private final AtomicLongArray invalidated = new AtomicLongArray(STRIPES);
+
+    private volatile long invalidatedAll;
+
+    private final AtomicLong admitted = new AtomicLong();
+
+    private final AtomicLong rejectedSize = new AtomicLong();
+
+    private final AtomicLong rejectedFrequency = new AtomicLong();
+
+    /**
+     * @param maxBytes       缓存总字节数上限
+     * @param maxObjectBytes 单个对象字节数上限
+     * @param minFrequency   放入缓存所需的最少访问次数
+     * @param ttlSeconds     过期秒数
+     */
+    public HotObjectCache(long maxBytes, long maxObjectBytes, int minFrequency, long ttlSeconds) {
+        this.maxObjectBytes = maxObjectBytes;
+        this.minFrequency = Math.max(1, minFrequency);
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String key, byte[] value) -> value.length)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        // 按缓存最多容纳的对象数估算草图大小
+        long capacity = maxBytes / Math.max(1, Math.min(maxObjectBytes, 4096));
+        this.sketch = new FrequencySketch((int) Math.min(capacity * 4, 1 << 24));
+    }
+
+    /**
+     * 读取缓存，同时记一次访问，返回内容的副本
+     *
+     * @return 未命中返回null
+     */
+    public byte[] get(String key) {
+        sketch.increment(key);
+        byte[] bytes = cache.getIfPresent(key);
+        return bytes == null ? null : bytes.clone();
+    }
+
+    /**
+     * 当前代数，从存储读取之前获取，放入缓存时传给{@link #offer(String, byte[], long)}
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * 未命中后读取到的内容，满足大小和访问频率时放入缓存
+     *
+     * @return 是否放入缓存
+     */
+    public boolean offer(String key, byte[] bytes) {
+        return offer(key, bytes, generation());
+    }
+
+    /**
+     * 未命中后读取到的内容，满足大小和访问频率、且读取开始后该key未被作废时放入缓存
+     *
+     * @param loadGeneration 开始读取前的{@link #generation()}
+     * @return 是否放入缓存
+     */
+    public boolean offer(String key, byte[] bytes, long loadGeneration) {
+        if (isInvalidatedSince(key, loadGeneration)) {
+            return false;
+        }
+        if (bytes == null || bytes.length > maxObjectBytes) {
+            rejectedSize.incrementAndGet();
+            return false;
+        }
+        if (sketch.frequency(key) < minFrequency) {
+            rejectedFrequency.incrementAndGet();
+            return false;
+        }
+        cache.put(key, bytes.clone());
+        // 检查和放入之间被作废时，作废可能先于放入完成，这里再删一次
+        if (isInvalidatedSince(key, loadGeneration)) {
+            cache.invalidate(key);
+            return false;
+        }
+        admitted.incrementAndGet();
+        return true;
+    }
+
+    public void invalidate(String key) {
+        invalidated.accumulateAndGet(stripe(key), generation.incrementAndGet(), Math::max);
+        cache.invalidate(key);
+    }
+
+    public void invalidateAll() {
+        invalidatedAll = generation.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    private boolean isInvalidatedSince(String key, long loadGeneration) {
+        return invalidatedAll > loadGeneration || invalidated.get(stripe(key)) > loadGeneration;
+    }
+
+    private static int stripe(String key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    public double getHitRate() {
+        return cache.stats().hitRate();
+    }
+
+    public long getAdmitted() {
+        return admitted.get();
+    }
+
+    /**
+     * 超过单个对象上限未放入的次数
+     */
+    public long getRejectedSize() {
+        return rejectedSize.get();
+    }
+
+    /**
+     * 访问次数不足未放入的次数
+     */
+    public long getRejectedFrequency() {
+        return rejectedFrequency.get();
+    }
+
+    public long getEntries() {
+        return cache.size();
+    }
+
+    @Override
+    public String toString() {
+        CacheStats stats = cache.stats();
+        return String.format("entries:%d hits:%d misses:%d hitRate:%.3f admitted:%d rejectedSize:%d rejectedFrequency:%d evictions:%d",
+                cache.size(), stats.hitCount(), stats.missCount(), stats.hitRate(),
+                admitted.get(), rejectedSize.get(), rejectedFrequency.get(), stats.evictionCount());
+    }
+
+    /**
+     * 4行计数草图，计数上限15，累计访问次数达到10倍宽度时全部减半
+     */
+    static class FrequencySketch {
+
+        private static final int DEPTH = 4;
+
+        private static final int MAX_COUNT = 15;
+
+        private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+        private final byte[][] table;
+
+        private final int mask;
+
+        private final int sampleSize;
+
+        private int additions;
+
+        FrequencySketch(int width) {
+            int size = Integer.highestOneBit(Math.max(16384, width - 1)) << 1;
+            this.table = new byte[DEPTH][size];
+            this.mask = size - 1;
+            this.sampleSize = size * 10;
+        }
+
+        synchronized void increment(String key) {
+            int hash = spread(key.hashCode());
+            for (int i = 0; i < DEPTH; i++) {
+                int index = index(hash, i);
+                if (table[i][index] < MAX_COUNT) {
+                    table[i][index]++;
+                }
+            }
+            if (++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        synchronized int frequency(String key) {
+            int hash = spread(key.hashCode());
+            int min = MAX_COUNT;
+            for (int i = 0; i < DEPTH; i++) {
+                min = Math.min(min, table[i][index(hash, i)]);
+            }
+            return min;
+        }
+
+        private void reset() {
+            for (byte[] row : table) {
+                for (int j = 0; j < row.length; j++) {
+                    row[j] >>= 1;
+                }
+            }
+            additions /= 2;
+        }
+
+        private int index(int hash, int row) {
+            int h = (hash ^ SEEDS[row]) * SEEDS[(row + 1) % DEPTH];
+            return (h ^ (h >>> 16)) & mask;
+        }
+
+        private static int spread(int hash) {
+            int h = hash * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
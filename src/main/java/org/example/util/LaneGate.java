@@ -0,0 +1,225 @@
+package org.example.util;
+
+import com.github.tobato.fastdfs.exception.FdfsUnavailableException;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.InetSocketAddress;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 按流量类型分配每个storage的连接数
+ * <p>
+ * 每个storage最多同时使用max-total-per-key个连接，其中interactiveReserved个只给交互请求使用，
+ * 批量任务最多使用剩余部分；有交互请求在等待时批量任务不再获得连接，连接释放后优先唤醒交互请求。
+ * 在从连接池借连接之前执行，因此批量任务不会把连接池占满，交互请求也不会排在批量任务后面。
+ *
+ * @author Kent HAN
+ * @date 2026/10/19
+ */
+@Slf4j
+@Component
+public class LaneGate {
+
+    @Value("${fdfs.pool.max-total-per-key:50}")
+    private int capacity;
+
+    /**
+     * 每个storage为交互请求保留的连接数
+     */
+    @Value("${fdfs.lanes.interactiveReserved:10}")
+    private int interactiveReserved;
+
+    @Value("${fdfs.pool.max-wait-millis:5000}")
+    private long interactiveMaxWaitMillis;
+
+    @Value("${fdfs.lanes.bulkMaxWaitMillis:60000}")
+    private long bulkMaxWaitMillis;
+
+    private final Map<InetSocketAddress, Gate> gates = new ConcurrentHashMap<>();
+
+    private final Map<TrafficLane, LaneStats> stats = new EnumMap<>(TrafficLane.class);
+
+    public LaneGate() {
+        for (TrafficLane lane : TrafficLane.values()) {
+            stats.put(lane, new LaneStats());
+        }
+    }
+
+    /**
+     * 获取一个连接名额，超时抛出FdfsUnavailableException
+     *
+     * @return 等待的纳秒数
+     */
+    public long acquire(TrafficLane lane, InetSocketAddress address) {
+        Gate gate = gates.computeIfAbsent(address, a -> new Gate());
+        LaneStats s = stats.get(lane);
+        long start = System.nanoTime();
+        long remaining = TimeUnit.MILLISECONDS.toNanos(lane == TrafficLane.BULK ? bulkMaxWaitMillis : interactiveMaxWaitMillis);
+        int bulkLimit = Math.max(1, capacity - interactiveReserved);
+        gate.lock.lock();
+        try {
+            s.waiting.incrementAndGet();
+            if (lane == TrafficLane.INTERACTIVE) {
+                gate.interactiveWaiting++;
+            }
+            try {
+                while (!gate.admits(lane, capacity, bulkLimit)) {
+                    if (remaining <= 0) {
+                        s.timeouts.incrementAndGet();
+                        throw new FdfsUnavailableException("no " + lane + " connection available for " + address
+                                + " in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+                    }
+                    remaining = (lane == TrafficLane.BULK ? gate.bulkTurn : gate.interactiveTurn).awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new FdfsUnavailableException("interrupted while waiting for connection to " + address, e);
+            } finally {
+                s.waiting.decrementAndGet();
+                if (lane == TrafficLane.INTERACTIVE && --gate.interactiveWaiting == 0) {
+                    // 交互请求不再等待，可能同时空出多个名额，唤醒所有批量任务各自判断
+                    gate.bulkTurn.signalAll();
+                }
+            }
+            gate.inUse++;
+            if (lane == TrafficLane.BULK) {
+                gate.bulkInUse++;
+            }
+        } finally {
+            gate.lock.unlock();
+        }
+        long waited = System.nanoTime() - start;
+        s.inUse.incrementAndGet();
+        s.acquired.incrementAndGet();
+        s.waitMicros.recordValue(TimeUnit.NANOSECONDS.toMicros(waited));
+        return waited;
+    }
+
+    public void release(TrafficLane lane, InetSocketAddress address) {
+        Gate gate = gates.get(address);
+        stats.get(lane).inUse.decrementAndGet();
+        gate.lock.lock();
+        try {
+            gate.inUse--;
+            if (lane == TrafficLane.BULK) {
+                gate.bulkInUse--;
+            }
+            if (gate.interactiveWaiting > 0) {
+                gate.interactiveTurn.signal();
+            } else {
+                gate.bulkTurn.signalAll();
+            }
+        } finally {
+            gate.lock.unlock();
+        }
+    }
+
+    /**
+     * 记录从连接池借连接的耗时
+     */
+    public void recordPoolWait(TrafficLane lane, long nanos) {
+        stats.get(lane).poolWaitMicros.recordValue(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    public LaneStats getStats(TrafficLane lane) {
+        return stats.get(lane);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<TrafficLane, LaneStats> e : stats.entrySet()) {
+            sb.append(e.getKey()).append(' ').append(e.getValue()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static class Gate {
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private final Condition interactiveTurn = lock.newCondition();
+
+        private final Condition bulkTurn = lock.newCondition();
+
+        private int inUse;
+
+        private int bulkInUse;
+
+        private int interactiveWaiting;
+
+        private boolean admits(TrafficLane lane, int capacity, int bulkLimit) {
+            if (inUse >= capacity) {
+                return false;
+            }
+            return lane == TrafficLane.INTERACTIVE || (bulkInUse < bulkLimit && interactiveWaiting == 0);
+        }
+    }
+
+    /**
+     * 单个通道的统计
+     */
+    public static class LaneStats {
+
+        private final AtomicLong acquired = new AtomicLong();
+
+        private final AtomicLong timeouts = new AtomicLong();
+
+        private final AtomicInteger inUse = new AtomicInteger();
+
+        private final AtomicInteger waiting = new AtomicInteger();
+
+        /**
+         * 等待名额的耗时，微秒
+         */
+        private final Histogram waitMicros = new ConcurrentHistogram(3);
+
+        /**
+         * 获得名额后从连接池借连接的耗时，微秒
+         */
+        private final Histogram poolWaitMicros = new ConcurrentHistogram(3);
+
+        public long getAcquired() {
+            return acquired.get();
+        }
+
+        public long getTimeouts() {
+            return timeouts.get();
+        }
+
+        public int getInUse() {
+            return inUse.get();
+        }
+
+        public int getWaiting() {
+            return waiting.get();
+        }
+
+        public Histogram getWaitMicros() {
+            return waitMicros;
+        }
+
+        public Histogram getPoolWaitMicros() {
+            return poolWaitMicros;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("acquired:%d inUse:%d waiting:%d timeouts:%d wait p50/p99/max:%.2f/%.2f/%.2fms pool wait p99:%.2fms",
+                    acquired.get(), inUse.get(), waiting.get(), timeouts.get(),
+                    waitMicros.getValueAtPercentile(50) / 1000.0, waitMicros.getValueAtPercentile(99) / 1000.0,
+                    waitMicros.getMaxValue() / 1000.0, poolWaitMicros.getValueAtPercentile(99) / 1000.0);
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package org.example.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+
+/**
+ * 缓存并延迟写入的properties文件
+ * <p>
+ * 解析后的Properties常驻内存，修改在防抖时间内合并为一次写入，
+ * 写入时先写临时文件再原子改名；文件被外部修改时通过WatchService感知并重新加载，
+ * 尚未写入的本地修改会覆盖在重新加载的内容之上。
+ *
+ * @author Kent HAN
+ * @date 2026/10/19
+ */
+@Slf4j
+public class PropertiesStore {
+
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 500;
+
+    private static final ConcurrentMap<String, PropertiesStore> STORES = new ConcurrentHashMap<>();
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "properties-store-writer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static final Object WATCH_LOCK = new Object();
+
+    private static WatchService watchService;
+
+    private static final Map<Path, WatchKey> WATCHED_DIRS = new HashMap<>();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(PropertiesStore::flushAll, "properties-store-shutdown"));
+    }
+
+    private final File file;
+
+    private final long debounceMillis;
+
+    private final Object writeLock = new Object();
+
+    /**
+     * 当前内容，受this保护
+     */
+    private Properties properties = new Properties();
+
+    /**
+     * 尚未写入文件的修改，value为null表示删除
+     */
+    private final Map<String, String> unsaved = new LinkedHashMap<>();
+
+    private ScheduledFuture<?> pendingSave;
+
+    /**
+     * 最近一次由本实例写入或加载的文件内容校验值，用于忽略自身写入触发的变更事件
+     */
+    private volatile long lastCrc = -1;
+
+    private PropertiesStore(File file, long debounceMillis) throws IOException {
+        this.file = file;
+        this.debounceMillis = debounceMillis;
+        if (file.isFile()) {
+            byte[] content = Files.readAllBytes(file.toPath());
+            properties.load(new ByteArrayInputStream(content));
+            lastCrc = crc(content);
+        }
+    }
+
+    /**
+     * 获取路径对应的store，不存在时创建
+     */
+    public static PropertiesStore of(String path) {
+        return of(path, DEFAULT_DEBOUNCE_MILLIS);
+    }
+
+    /**
+     * 获取路径对应的store，防抖时间只在首次创建时生效
+     *
+     * @param path           文件路径
+     * @param debounceMillis 最后一次修改后等待多久写入文件
+     */
+    public static PropertiesStore of(String path, long debounceMillis) {
+        File file = new File(path).getAbsoluteFile();
+        return STORES.computeIfAbsent(file.getPath(), k -> {
+            try {
+                PropertiesStore store = new PropertiesStore(file, debounceMillis);
+                watch(store);
+                return store;
+            } catch (IOException e) {
+                throw new IllegalStateException("load properties(" + k + ") error", e);
+            }
+        });
+    }
+
+    /**
+     * 立即写入全部store中未保存的修改
+     */
+    public static void flushAll() {
+        for (PropertiesStore store : STORES.values()) {
+            try {
+                store.flush();
+            } catch (IOException e) {
+                log.error("flush properties:{} error:{}", store.file, e.getMessage());
+            }
+        }
+    }
+
+    public synchronized String get(String key) {
+        return properties.getProperty(key);
+    }
+
+    public synchronized String get(String key, String defaultValue) {
+        return properties.getProperty(key, defaultValue);
+    }
+
+    /**
+     * 当前内容的副本
+     */
+    public synchronized Properties snapshot() {
+        Properties copy = new Properties();
+        copy.putAll(properties);
+        return copy;
+    }
+
+    public void set(String key, String value) {
+        setAll(Collections.singletonMap(key, value));
+    }
+
+    /**
+     * 批量修改，合并为一次写入
+     */
+    public synchronized void setAll(Map<String, String> values) {
+        for (Map.Entry<String, String> e : values.entrySet()) {
+            properties.setProperty(e.getKey(), e.getValue());
+            unsaved.put(e.getKey(), e.getValue());
+        }
+        scheduleSave();
+    }
+
+    public synchronized void remove(String key) {
+        properties.remove(key);
+        unsaved.put(key, null);
+        scheduleSave();
+    }
+
+    /**
+     * 立即写入未保存的修改
+     * <p>
+     * 写入期间修改记录仍保留，外部变更触发重新加载时不会丢失；写入成功后只移除与快照一致的记录，
+     * 写入期间再次修改的key留给下一次写入。
+     */
+    public void flush() throws IOException {
+        synchronized (writeLock) {
+            Properties copy;
+            Map<String, String> written;
+            synchronized (this) {
+                if (unsaved.isEmpty()) {
+                    return;
+                }
+                if (pendingSave != null) {
+                    pendingSave.cancel(false);
+                    pendingSave = null;
+                }
+                copy = snapshot();
+                written = new LinkedHashMap<>(unsaved);
+            }
+            write(copy, "Update " + written.keySet());
+            synchronized (this) {
+                for (Map.Entry<String, String> e : written.entrySet()) {
+                    if (unsaved.containsKey(e.getKey()) && Objects.equals(unsaved.get(e.getKey()), e.getValue())) {
+                        unsaved.remove(e.getKey());
+                    }
+                }
+            }
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    private void scheduleSave() {
+        if (pendingSave != null) {
+            pendingSave.cancel(false);
+        }
+        pendingSave = SCHEDULER.schedule(() -> {
+            try {
+                flush();
+            } catch (IOException e) {
+                log.error("save properties:{} error:{}", file, e.getMessage());
+            }
+        }, debounceMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 写临时文件后原子改名，避免读者看到写了一半的文件
+     */
+    private void write(Properties copy, String comment) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        copy.store(buffer, comment);
+        byte[] content = buffer.toByteArray();
+        FileUtil.newFolder(file.getParentFile());
+        Path tmp = Files.createTempFile(file.getParentFile().toPath(), file.getName(), ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                out.write(content);
+            }
+            lastCrc = crc(content);
+            Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        // 目录可能是首次写入时才创建的
+        watch(this);
+    }
+
+    /**
+     * 文件变更事件回调
+     */
+    private void onFileChanged() {
+        byte[] content;
+        try {
+            if (!file.isFile()) {
+                return;
+            }
+            content = Files.readAllBytes(file.toPath());
+        } catch (IOException e) {
+            log.error("reload properties:{} error:{}", file, e.getMessage());
+            return;
+        }
+        long value = crc(content);
+        if (value == lastCrc) {
+            return;
+        }
+        Properties loaded = new Properties();
+        try {
+            loaded.load(new ByteArrayInputStream(content));
+        } catch (IOException e) {
+            log.error("reload properties:{} error:{}", file, e.getMessage());
+            return;
+        }
+        synchronized (this) {
+            for (Map.Entry<String, String> e : unsaved.entrySet()) {
+                if (e.getValue() == null) {
+                    loaded.remove(e.getKey());
+                } else {
+                    loaded.setProperty(e.getKey(), e.getValue());
+                }
+            }
+            properties = loaded;
+            lastCrc = value;
+        }
+        log.info("properties:{} changed externally, reloaded", file);
+    }
+
+    private static long crc(byte[] content) {
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        return crc.getValue();
+    }
+
+    private static void watch(PropertiesStore store) throws IOException {
+        Path dir = store.file.getParentFile().toPath();
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        synchronized (WATCH_LOCK) {
+            if (watchService == null) {
+                watchService = FileSystems.getDefault().newWatchService();
+                Thread t = new Thread(PropertiesStore::watchLoop, "properties-store-watcher");
+                t.setDaemon(true);
+                t.start();
+            }
+            if (!WATCHED_DIRS.containsKey(dir)) {
+                WATCHED_DIRS.put(dir, dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY));
+            }
+        }
+    }
+
+    private static void watchLoop() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path dir = (Path) key.watchable();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    for (PropertiesStore store : STORES.values()) {
+                        store.onFileChanged();
+                    }
+                    continue;
+                }
+                Path changed = dir.resolve((Path) event.context());
+                PropertiesStore store = STORES.get(changed.toAbsolutePath().toString());
+                if (store != null) {
+                    store.onFileChanged();
+                }
+            }
+            key.reset();
+        }
+    }
+}
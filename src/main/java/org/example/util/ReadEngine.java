@@ -0,0 +1,24 @@
+package org.example.util;
+
+/**
+ * 文件读取方式
+ *
+ * @author Kent HAN
+ * @date 2026/10/19
+ */
+public enum ReadEngine {
+
+    /**
+     * 通过storage协议读取，占用fdfs连接池
+     */
+    STORAGE,
+
+    /**
+     * 通过storage节点的nginx模块读取，即fdfs.serverUrl
+     */
+    HTTP;
+
+    public static ReadEngine of(String name) {
+        return name == null || name.isEmpty() ? STORAGE : valueOf(name.trim().toUpperCase());
+    }
+}
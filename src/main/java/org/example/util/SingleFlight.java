@@ -0,0 +1,86 @@
+package org.example.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 合并同一个key的并发请求
+ * <p>
+ * 同一时刻同一个key只有第一个调用者(leader)执行加载，其余调用者等待并拿到同一个结果或同一个异常。
+ * 加载结束后立即移除，之后的调用重新加载，不做缓存。
+ *
+ * @author Kent HAN
+ * @date 2026/10/19
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> calls = new ConcurrentHashMap<>();
+
+    private final AtomicLong executed = new AtomicLong();
+
+    private final AtomicLong shared = new AtomicLong();
+
+    /**
+     * 执行或加入正在进行的加载
+     *
+     * @param key    请求标识
+     * @param loader 加载方法，只在leader线程中调用
+     * @return 加载结果
+     * @throws Exception loader抛出的异常
+     */
+    public V execute(K key, Callable<V> loader) throws Exception {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> existing = calls.putIfAbsent(key, call);
+        if (existing != null) {
+            shared.incrementAndGet();
+            return await(existing);
+        }
+        executed.incrementAndGet();
+        try {
+            V value = loader.call();
+            call.complete(value);
+            return value;
+        } catch (Throwable e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            calls.remove(key, call);
+        }
+    }
+
+    private V await(CompletableFuture<V> call) throws Exception {
+        try {
+            return call.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw (Error) cause;
+        }
+    }
+
+    /**
+     * 正在进行的加载数
+     */
+    public int getInFlight() {
+        return calls.size();
+    }
+
+    /**
+     * 实际执行加载的次数
+     */
+    public long getExecuted() {
+        return executed.get();
+    }
+
+    /**
+     * 直接拿到其他线程加载结果的次数
+     */
+    public long getShared() {
+        return shared.get();
+    }
+}
@@ -0,0 +1,100 @@
+package org.example.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * 令牌桶限速，单位字节/秒
+ * <p>
+ * 桶容量只有100毫秒的流量，不会先攒一大批再集中发送；令牌不足时允许透支，透支部分由调用者按速率等待，
+ * 多个线程共用一个桶时各自按读取量分摊等待时间。速率可以随时修改，0为不限速。
+ * 时钟和等待方式可以替换，测试时不依赖真实时间。
+ *
+ * @author Kent HAN
+ * @date 2026/10/19
+ */
+public class TokenBucket {
+
+    private static final long BURST_MILLIS = 100;
+
+    private final LongSupplier ticker;
+
+    private final LongConsumer parker;
+
+    private volatile long bytesPerSecond;
+
+    private double available;
+
+    private long lastNanos;
+
+    public TokenBucket(long bytesPerSecond) {
+        this(bytesPerSecond, System::nanoTime, TokenBucket::park);
+    }
+
+    /**
+     * @param ticker 当前纳秒时间
+     * @param parker 等待指定的纳秒数
+     */
+    TokenBucket(long bytesPerSecond, LongSupplier ticker, LongConsumer parker) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.ticker = ticker;
+        this.parker = parker;
+        this.lastNanos = ticker.getAsLong();
+    }
+
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    public synchronized void setBytesPerSecond(long bytesPerSecond) {
+        refill(ticker.getAsLong());
+        this.bytesPerSecond = bytesPerSecond;
+        available = Math.min(available, burst());
+    }
+
+    public boolean isUnlimited() {
+        return bytesPerSecond <= 0;
+    }
+
+    /**
+     * 扣除令牌
+     *
+     * @return 需要等待的纳秒数
+     */
+    public synchronized long reserve(long bytes) {
+        if (bytesPerSecond <= 0) {
+            return 0;
+        }
+        refill(ticker.getAsLong());
+        available -= bytes;
+        return available >= 0 ? 0 : (long) (-available * TimeUnit.SECONDS.toNanos(1) / bytesPerSecond);
+    }
+
+    /**
+     * 扣除令牌并等待
+     */
+    public void acquire(long bytes) {
+        parker.accept(reserve(bytes));
+    }
+
+    static void park(long nanos) {
+        long deadline = System.nanoTime() + nanos;
+        while (nanos > 0 && !Thread.currentThread().isInterrupted()) {
+            LockSupport.parkNanos(nanos);
+            nanos = deadline - System.nanoTime();
+        }
+    }
+
+    private void refill(long now) {
+        if (bytesPerSecond > 0) {
+            available = Math.min(burst(), available + (now - lastNanos) * bytesPerSecond / 1e9);
+        }
+        lastNanos = now;
+    }
+
+    private double burst() {
+        return bytesPerSecond * BURST_MILLIS / 1000.0;
+    }
+}
@@ -0,0 +1,54 @@
+package org.example.util;
+
+import java.util.concurrent.Callable;
+
+/**
+ * 访问storage的流量类型
+ * <p>
+ * 当前线程的类型决定从连接池借连接时走哪条通道，默认为交互请求；
+ * 批量导出、同步、打包等后台任务用{@link #call}或{@link #run}标记为BULK。
+ *
+ * @author Kent HAN
+ * @date 2026/10/19
+ */
+public enum TrafficLane {
+
+    /**
+     * 交互请求，如缩略图、在线播放，可以使用全部连接并优先获得连接
+     */
+    INTERACTIVE,
+
+    /**
+     * 批量任务，不能占用为交互请求保留的连接，有交互请求等待时让行
+     */
+    BULK;
+
+    private static final ThreadLocal<TrafficLane> CURRENT = ThreadLocal.withInitial(() -> INTERACTIVE);
+
+    public static TrafficLane current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 以指定类型执行，结束后恢复原来的类型
+     */
+    public static <T> T call(TrafficLane lane, Callable<T> task) throws Exception {
+        TrafficLane previous = CURRENT.get();
+        CURRENT.set(lane);
+        try {
+            return task.call();
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+
+    public static void run(TrafficLane lane, Runnable task) {
+        TrafficLane previous = CURRENT.get();
+        CURRENT.set(lane);
+        try {
+            task.run();
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.example.config;
+
+import com.github.tobato.fastdfs.domain.conn.FdfsConnectionManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.mock.env.MockEnvironment;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FdfsLazyInitConfigTest {
+
+    @Test
+    void connectionManagerIsLazyRegardlessOfRegistrationOrder() {
+        MockEnvironment environment = new MockEnvironment().withProperty("fdfs.lazy-init", "true");
+
+        BeanDefinition lazyFirst = refresh(environment, FdfsLazyInitConfig.class, TrafficLaneConfig.class);
+        BeanDefinition lanesFirst = refresh(environment, TrafficLaneConfig.class, FdfsLazyInitConfig.class);
+
+        for (BeanDefinition definition : new BeanDefinition[]{lazyFirst, lanesFirst}) {
+            assertEquals(LaneConnectionManager.class.getName(), definition.getBeanClassName());
+            assertTrue(definition.isLazyInit());
+        }
+    }
+
+    @Test
+    void onlyFdfsBeansAreDeferred() {
+        GenericApplicationContext context = new GenericApplicationContext();
+        context.setEnvironment(new MockEnvironment().withProperty("fdfs.lazy-init", "true"));
+        context.registerBeanDefinition("lazyInit", new RootBeanDefinition(FdfsLazyInitConfig.class));
+        context.registerBeanDefinition("other", new RootBeanDefinition(StringBuilder.class));
+        context.registerBeanDefinition("fdfsConnectionManager", new RootBeanDefinition(FdfsConnectionManager.class));
+        context.refresh();
+
+        assertTrue(context.getBeanFactory().getBeanDefinition("fdfsConnectionManager").isLazyInit());
+        assertFalse(context.getBeanFactory().getBeanDefinition("other").isLazyInit());
+        context.close();
+    }
+
+    @Test
+    void disabledLeavesDefinitionsUntouched() {
+        BeanDefinition definition = refresh(new MockEnvironment().withProperty("fdfs.lanes.enabled", "false"),
+                TrafficLaneConfig.class, FdfsLazyInitConfig.class);
+
+        assertEquals(FdfsConnectionManager.class.getName(), definition.getBeanClassName());
+        assertFalse(definition.isLazyInit());
+    }
+
+    private static BeanDefinition refresh(MockEnvironment environment, Class<?> first, Class<?> second) {
+        GenericApplicationContext context = new GenericApplicationContext();
+        context.setEnvironment(environment);
+        context.registerBeanDefinition("first", new RootBeanDefinition(first));
+        context.registerBeanDefinition("second", new RootBeanDefinition(second));
+        RootBeanDefinition manager = new RootBeanDefinition();
+        manager.setBeanClassName(FdfsConnectionManager.class.getName());
+        // 未开启延迟时会被创建，这里只检查定义
+        manager.setAbstract(true);
+        context.registerBeanDefinition("fdfsConnectionManager", manager);
+        context.refresh();
+        BeanDefinition definition = context.getBeanFactory().getBeanDefinition("fdfsConnectionManager");
+        context.close();
+        return definition;
+    }
+}
@@ -0,0 +1,141 @@
+package org.example.jfr;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.example.util.FileUtil;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FdfsJfrTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void settingsProfileEnablesEvents() throws Exception {
+        try (Reader reader = new InputStreamReader(getClass().getResourceAsStream("/jfr/fdfs.jfc"), StandardCharsets.UTF_8)) {
+            Map<String, String> settings = Configuration.create(reader).getSettings();
+            assertEquals("true", settings.get("org.example.FdfsOperation#enabled"));
+            assertEquals("true", settings.get("org.example.FileIo#enabled"));
+        }
+    }
+
+    @Test
+    void recordsFileUtilOperations() throws Exception {
+        Path source = tempDir.resolve("a.bin");
+        Files.write(source, new byte[1234]);
+        Path dump = tempDir.resolve("file-io.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(FileIoEvent.class).withoutThreshold();
+            recording.start();
+            FileUtil.copyFile(source.toFile(), tempDir.resolve("b.bin").toFile());
+            FileUtil.read(source.toFile());
+            FileUtil.listFiles(tempDir.toFile());
+            recording.stop();
+            recording.dump(dump);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump).stream()
+                .filter(e -> e.getEventType().getName().equals("org.example.FileIo"))
+                .collect(Collectors.toList());
+        assertEquals(3, events.size());
+        assertEquals("copy", events.get(0).getString("operation"));
+        assertEquals(1234, events.get(0).getLong("bytes"));
+        assertEquals("read", events.get(1).getString("operation"));
+        assertEquals("list", events.get(2).getString("operation"));
+        assertEquals(2, events.get(2).getInt("files"));
+    }
+
+    @Test
+    void copyFolderRecordsOneEventForTheWholeTree() throws Exception {
+        Path source = tempDir.resolve("src");
+        Files.createDirectories(source.resolve("sub/skip"));
+        Files.write(source.resolve("a.bin"), new byte[100]);
+        Files.write(source.resolve("sub/b.bin"), new byte[200]);
+        Files.write(source.resolve("sub/skip/c.bin"), new byte[400]);
+        Path dump = tempDir.resolve("copy-folder.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(FileIoEvent.class).withoutThreshold();
+            recording.start();
+            assertTrue(FileUtil.copyFolder(source.toString(), tempDir.resolve("dst").toString(), "skip"));
+            recording.stop();
+            recording.dump(dump);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump).stream()
+                .filter(e -> e.getEventType().getName().equals("org.example.FileIo"))
+                .collect(Collectors.toList());
+        assertEquals(1, events.size());
+        assertEquals("copyFolder", events.get(0).getString("operation"));
+        assertEquals(300, events.get(0).getLong("bytes"));
+        assertEquals(2, events.get(0).getInt("files"));
+    }
+
+    @Test
+    void operationEventRecordsNodeAndPoolWait() throws Exception {
+        Path dump = tempDir.resolve("operation.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(FdfsOperationEvent.class).withoutThreshold();
+            recording.start();
+            JfrSpan outer = FdfsJfr.begin("download", "group1", "M00/00/00/a");
+            FdfsJfr.onCommand(new InetSocketAddress("10.0.0.1", 23000), TimeUnit.MILLISECONDS.toNanos(2));
+            // 嵌套操作不接收节点和等待时间，都记到最外层
+            JfrSpan inner = FdfsJfr.begin("query", "group1", "M00/00/00/a");
+            FdfsJfr.onCommand(new InetSocketAddress("10.0.0.2", 23000), TimeUnit.MILLISECONDS.toNanos(3));
+            FdfsJfr.end(inner, 0, true);
+            FdfsJfr.end(outer, 10, true);
+            recording.stop();
+            recording.dump(dump);
+        }
+        Map<String, RecordedEvent> events = RecordingFile.readAllEvents(dump).stream()
+                .filter(e -> e.getEventType().getName().equals("org.example.FdfsOperation"))
+                .collect(Collectors.toMap(e -> e.getString("operation"), e -> e));
+        RecordedEvent outer = events.get("download");
+        assertEquals("10.0.0.2:23000", outer.getString("node"));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(5), outer.getDuration("poolWait").toNanos());
+        assertEquals(10, outer.getLong("bytes"));
+        assertEquals("INTERACTIVE", outer.getString("lane"));
+        assertNull(events.get("query").getString("node"));
+    }
+
+    @Test
+    void operationEndedAfterRecordingStopsDoesNotLeak() throws Exception {
+        JfrSpan stale;
+        try (Recording recording = new Recording()) {
+            recording.enable(FdfsOperationEvent.class).withoutThreshold();
+            recording.start();
+            stale = FdfsJfr.begin("upload", "group1", "a.bin");
+            recording.stop();
+        }
+        FdfsJfr.end(stale, 0, true);
+
+        Path dump = tempDir.resolve("after-stop.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(FdfsOperationEvent.class).withoutThreshold();
+            recording.start();
+            JfrSpan span = FdfsJfr.begin("upload", "group1", "b.bin");
+            FdfsJfr.onCommand(new InetSocketAddress("10.0.0.3", 23000), 1);
+            FdfsJfr.end(span, 1, true);
+            recording.stop();
+            recording.dump(dump);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump).stream()
+                .filter(e -> e.getEventType().getName().equals("org.example.FdfsOperation"))
+                .collect(Collectors.toList());
+        assertEquals(1, events.size());
+        assertEquals("10.0.0.3:23000", events.get(0).getString("node"));
+    }
+}
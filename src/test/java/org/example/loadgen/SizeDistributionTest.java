@@ -0,0 +1,44 @@
+package org.example.loadgen;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SizeDistributionTest {
+
+    @Test
+    void parsesDistributions() {
+        Random random = new Random(1);
+        assertEquals(65536, SizeDistribution.parse("64k").next(random));
+        SizeDistribution uniform = SizeDistribution.parse("uniform:1k-2k");
+        for (int i = 0; i < 1000; i++) {
+            long size = uniform.next(random);
+            assertTrue(size >= 1024 && size <= 2048);
+        }
+        SizeDistribution lognormal = SizeDistribution.parse("lognormal:64k,2,1m");
+        assertEquals(1 << 20, lognormal.max());
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(lognormal.next(random) <= 1 << 20);
+        }
+        SizeDistribution mix = SizeDistribution.parse("mix:4k=1,8m=0");
+        assertEquals(4096, mix.next(random));
+        assertEquals(8 << 20, mix.max());
+        assertThrows(IllegalArgumentException.class, () -> SizeDistribution.parse("pareto:1k"));
+    }
+
+    @Test
+    void picksOperationsByWeight() {
+        Operation.Mix mix = Operation.Mix.parse("upload=1, download=3");
+        Random random = new Random(1);
+        Map<Operation, Integer> counts = new EnumMap<>(Operation.class);
+        for (int i = 0; i < 10000; i++) {
+            counts.merge(mix.next(random), 1, Integer::sum);
+        }
+        assertEquals(2, counts.size());
+        assertEquals(7500, counts.get(Operation.DOWNLOAD), 300);
+    }
+}
@@ -0,0 +1,132 @@
+package org.example.service;
+
+import com.github.tobato.fastdfs.domain.fdfs.FileInfo;
+import com.github.tobato.fastdfs.domain.proto.storage.DownloadCallback;
+import com.github.tobato.fastdfs.service.FastFileStorageClient;
+import org.example.util.BandwidthShaper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class BulkDownloadServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    private FastFileStorageClient client;
+
+    private BulkDownloadService service;
+
+    @BeforeEach
+    void setUp() {
+        client = mock(FastFileStorageClient.class);
+        when(client.queryFileInfo(eq("group1"), anyString())).thenAnswer(inv -> info(content(inv.getArgument(1))));
+        when(client.downloadFile(eq("group1"), anyString(), any())).thenAnswer(inv -> {
+            int n = inFlight.incrementAndGet();
+            maxInFlight.accumulateAndGet(n, Math::max);
+            try {
+                Thread.sleep(5);
+                DownloadCallback<?> callback = inv.getArgument(2);
+                return callback.recv(new ByteArrayInputStream(content(inv.getArgument(1))));
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+        BandwidthShaper shaper = new BandwidthShaper();
+        shaper.init();
+        service = new BulkDownloadService();
+        ReflectionTestUtils.setField(service, "storageClient", client);
+        ReflectionTestUtils.setField(service, "bandwidthShaper", shaper);
+        ReflectionTestUtils.setField(service, "groupName", "group1");
+        ReflectionTestUtils.setField(service, "fileDownUrl", tempDir.toString());
+        ReflectionTestUtils.setField(service, "maxTotalPerKey", 8);
+        ReflectionTestUtils.setField(service, "retries", 2);
+        ReflectionTestUtils.setField(service, "progressSeconds", 60);
+        service.init();
+    }
+
+    @Test
+    void concurrentJobsShareServiceWideLimit() throws Exception {
+        List<BulkDownloadJob> jobs = new ArrayList<>();
+        for (int j = 0; j < 3; j++) {
+            List<String> paths = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                paths.add("group1/M00/00/0" + j + "/f" + i);
+            }
+            jobs.add(service.submit(paths, tempDir.toString(), 8));
+        }
+        for (BulkDownloadJob job : jobs) {
+            assertTrue(job.await(30, TimeUnit.SECONDS));
+            assertEquals(4, job.getConcurrency());
+            assertEquals(20, job.getDownloaded());
+        }
+        assertTrue(maxInFlight.get() <= 4, "max in flight " + maxInFlight.get());
+        assertArrayEquals(content("M00/00/02/f7"), Files.readAllBytes(tempDir.resolve("M00/00/02/f7")));
+    }
+
+    @Test
+    void deduplicatesPathsAndSkipsIdenticalLocalFiles() throws Exception {
+        Files.createDirectories(tempDir.resolve("M00/00/00"));
+        Files.write(tempDir.resolve("M00/00/00/same"), content("M00/00/00/same"));
+
+        BulkDownloadJob job = service.submit(Arrays.asList("group1/M00/00/00/a", "M00/00/00/a", "group1/M00/00/00/a",
+                "M00/00/00/same"));
+
+        assertTrue(job.await(10, TimeUnit.SECONDS));
+        assertEquals(2, job.getTotal());
+        assertEquals(1, job.getDownloaded());
+        assertEquals(1, job.getSkipped());
+        verify(client, times(1)).downloadFile(eq("group1"), eq("M00/00/00/a"), any());
+        try (Stream<Path> files = Files.list(tempDir.resolve("M00/00/00"))) {
+            assertEquals(2, files.count());
+        }
+    }
+
+    @Test
+    void retriesFailedDownloadsAndReportsMissingFiles() throws Exception {
+        when(client.queryFileInfo("group1", "M00/00/00/missing")).thenReturn(null);
+        when(client.downloadFile(eq("group1"), eq("M00/00/00/flaky"), any()))
+                .thenThrow(new RuntimeException("connection reset"))
+                .thenAnswer(inv -> ((DownloadCallback<?>) inv.getArgument(2))
+                        .recv(new ByteArrayInputStream(content("M00/00/00/flaky"))));
+
+        BulkDownloadJob job = service.submit(Arrays.asList("M00/00/00/flaky", "M00/00/00/missing"));
+
+        assertTrue(job.await(10, TimeUnit.SECONDS));
+        assertEquals(1, job.getDownloaded());
+        assertEquals(1, job.getRetried());
+        assertEquals(1, job.getFailed());
+        assertTrue(job.getFailures().containsKey("M00/00/00/missing"));
+    }
+
+    private static byte[] content(String path) {
+        return ("content of " + path).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static FileInfo info(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return new FileInfo("127.0.0.1", data.length, 0, (int) crc.getValue());
+    }
+}
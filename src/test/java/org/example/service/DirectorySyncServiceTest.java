@@ -0,0 +1,173 @@
+package org.example.service;
+
+import com.github.tobato.fastdfs.domain.fdfs.FileInfo;
+import com.github.tobato.fastdfs.domain.fdfs.StorePath;
+import com.github.tobato.fastdfs.service.FastFileStorageClient;
+import com.google.common.hash.Hashing;
+import org.example.util.BandwidthShaper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class DirectorySyncServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final AtomicInteger uploads = new AtomicInteger();
+
+    private FastFileStorageClient client;
+
+    private DirectorySyncService service;
+
+    private Path root;
+
+    private File manifest;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        client = mock(FastFileStorageClient.class);
+        when(client.uploadFile(any(InputStream.class), anyLong(), anyString(), isNull()))
+                .thenAnswer(inv -> new StorePath("group1", "M00/00/00/f" + uploads.incrementAndGet()));
+        when(client.queryFileInfo(anyString(), anyString())).thenReturn(new FileInfo("127.0.0.1", 1, 0, 0));
+        BandwidthShaper shaper = new BandwidthShaper();
+        shaper.init();
+        service = new DirectorySyncService();
+        ReflectionTestUtils.setField(service, "storageClient", client);
+        ReflectionTestUtils.setField(service, "bandwidthShaper", shaper);
+        ReflectionTestUtils.setField(service, "concurrency", 2);
+        root = Files.createDirectories(tempDir.resolve("root"));
+        manifest = tempDir.resolve("sync.manifest").toFile();
+    }
+
+    @Test
+    void syncsAddedChangedUnchangedAndDeletedFiles() throws Exception {
+        write("a.txt", "a", 1000);
+        write("sub/b.txt", "b", 1000);
+        write("c.txt", "c", 1000);
+
+        DirectorySyncService.SyncReport first = service.sync(root.toFile(), manifest);
+        assertEquals(3, first.getAdded().get());
+        assertEquals(3, uploads.get());
+
+        write("a.txt", "a2", 2000);
+        // 只改修改时间，内容相同
+        root.resolve("sub/b.txt").toFile().setLastModified(3000);
+        Files.delete(root.resolve("c.txt"));
+        String oldA = remotePath("a.txt");
+        String oldC = remotePath("c.txt");
+
+        DirectorySyncService.SyncReport second = service.sync(root.toFile(), manifest);
+
+        assertEquals(1, second.getChanged().get());
+        assertEquals(1, second.getUnchanged().get());
+        assertEquals(1, second.getDeleted().get());
+        assertTrue(second.getFailures().isEmpty());
+        assertEquals(4, uploads.get());
+        verify(client).deleteFile("group1", oldA);
+        verify(client).deleteFile("group1", oldC);
+
+        DirectorySyncService.SyncReport third = service.sync(root.toFile(), manifest);
+        assertEquals(2, third.getUnchanged().get());
+        assertEquals(4, uploads.get());
+        assertFalse(new File(manifest.getPath() + ".journal").exists());
+    }
+
+    @Test
+    void resumesFromJournalAndDeletesPendingReplacedFile() throws Exception {
+        write("a.txt", "a", 1000);
+        write("b.txt", "b", 1000);
+        service.sync(root.toFile(), manifest);
+        String oldA = remotePath("a.txt");
+
+        // 模拟中断：a.txt的新版本已上传并记入日志，但旧文件未删除；日志最后一行只写了一半
+        write("a.txt", "a2", 2000);
+        write("b.txt", "b2", 2000);
+        File a = root.resolve("a.txt").toFile();
+        String hash = com.google.common.io.Files.asByteSource(a).hash(Hashing.sha256()).toString();
+        String journal = "U\ta.txt\t" + a.length() + "\t2000\t" + hash + "\tgroup1\tM00/00/00/new-a\n"
+                + "O\tgroup1%2F" + oldA.replace("/", "%2F") + "\n"
+                + "U\tb.txt\t2\t20";
+        Files.write(new File(manifest.getPath() + ".journal").toPath(), journal.getBytes(StandardCharsets.UTF_8));
+
+        DirectorySyncService.SyncReport report = service.sync(root.toFile(), manifest);
+
+        // a.txt不再上传，只上传b.txt
+        assertEquals(3, uploads.get());
+        assertEquals(1, report.getChanged().get());
+        assertEquals(1, report.getUnchanged().get());
+        verify(client).deleteFile("group1", oldA);
+        assertEquals("M00/00/00/new-a", remotePath("a.txt"));
+        assertFalse(new String(Files.readAllBytes(manifest.toPath()), StandardCharsets.UTF_8).contains("\nO\t"));
+    }
+
+    @Test
+    void keepsReplacedFileUntilDeleteSucceeds() throws Exception {
+        write("a.txt", "a", 1000);
+        service.sync(root.toFile(), manifest);
+        String oldA = remotePath("a.txt");
+        doThrow(new RuntimeException("storage down")).doNothing().when(client).deleteFile("group1", oldA);
+
+        write("a.txt", "a2", 2000);
+        service.sync(root.toFile(), manifest);
+        assertTrue(new String(Files.readAllBytes(manifest.toPath()), StandardCharsets.UTF_8).contains("O\t"));
+
+        service.sync(root.toFile(), manifest);
+
+        verify(client, times(2)).deleteFile("group1", oldA);
+        assertFalse(new String(Files.readAllBytes(manifest.toPath()), StandardCharsets.UTF_8).contains("O\t"));
+    }
+
+    @Test
+    void serializesSyncsOfSameManifest() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            write("f" + i + ".txt", "content" + i, 1000);
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        Future<DirectorySyncService.SyncReport> first = pool.submit(() -> service.sync(root.toFile(), manifest));
+        Future<DirectorySyncService.SyncReport> second = pool.submit(() -> service.sync(root.toFile(), manifest));
+
+        int added = first.get().getAdded().get() + second.get().getAdded().get();
+        pool.shutdown();
+
+        assertEquals(20, added);
+        assertEquals(20, uploads.get());
+        assertTrue(first.get().getFailures().isEmpty());
+        assertTrue(second.get().getFailures().isEmpty());
+    }
+
+    private void write(String relative, String content, long mtime) throws Exception {
+        Path file = root.resolve(relative);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        file.toFile().setLastModified(mtime);
+    }
+
+    /**
+     * 从清单中读取文件对应的远程路径
+     */
+    private String remotePath(String relative) throws Exception {
+        for (String line : Files.readAllLines(manifest.toPath())) {
+            String[] cols = line.split("\t");
+            if (cols.length == 7 && cols[1].equals(relative)) {
+                return cols[6];
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,74 @@
+package org.example.service;
+
+import com.github.tobato.fastdfs.domain.fdfs.StorePath;
+import com.github.tobato.fastdfs.service.AppendFileStorageClient;
+import org.apache.commons.io.IOUtils;
+import org.example.util.BandwidthShaper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class FolderZipUploadServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void streamsFolderAsZipInChunksAndSkipsFilterDir() throws Exception {
+        Files.createDirectories(tempDir.resolve("a/task"));
+        Files.createDirectories(tempDir.resolve("a/b/task"));
+        byte[] random = new byte[100_000];
+        new Random(1).nextBytes(random);
+        Files.write(tempDir.resolve("a/1.txt"), random);
+        Files.write(tempDir.resolve("a/b/2.txt"), "two".getBytes());
+        Files.write(tempDir.resolve("a/task/skip.txt"), "skip".getBytes());
+        Files.write(tempDir.resolve("a/b/task/skip.txt"), "skip".getBytes());
+
+        ByteArrayOutputStream remote = new ByteArrayOutputStream();
+        AppendFileStorageClient client = mock(AppendFileStorageClient.class);
+        when(client.uploadAppenderFile(anyString(), any(InputStream.class), anyLong(), eq("zip"))).thenAnswer(inv -> {
+            IOUtils.copy((InputStream) inv.getArgument(1), remote);
+            return new StorePath("group1", "M00/00/00/a.zip");
+        });
+        doAnswer(inv -> IOUtils.copy((InputStream) inv.getArgument(2), remote))
+                .when(client).appendFile(eq("group1"), eq("M00/00/00/a.zip"), any(InputStream.class), anyLong());
+
+        FolderZipUploadService service = new FolderZipUploadService();
+        ReflectionTestUtils.setField(service, "appendFileStorageClient", client);
+        BandwidthShaper shaper = new BandwidthShaper();
+        shaper.init();
+        ReflectionTestUtils.setField(service, "bandwidthShaper", shaper);
+        ReflectionTestUtils.setField(service, "groupName", "group1");
+        ReflectionTestUtils.setField(service, "queueChunks", 1);
+        ReflectionTestUtils.setField(service, "chunkSize", 256);
+
+        assertEquals("group1/M00/00/00/a.zip", service.uploadFolderAsZip(tempDir.resolve("a").toString(), "task"));
+
+        verify(client, atLeast(2)).appendFile(anyString(), anyString(), any(InputStream.class), anyLong());
+        Map<String, Integer> entries = new HashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(remote.toByteArray()))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                entries.put(entry.getName(), IOUtils.toByteArray(zip).length);
+            }
+        }
+        assertEquals(100_000, entries.get("1.txt"));
+        assertEquals(3, entries.get("b/2.txt"));
+        assertFalse(entries.keySet().stream().anyMatch(name -> name.contains("task")));
+    }
+}
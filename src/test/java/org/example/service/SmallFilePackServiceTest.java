@@ -0,0 +1,172 @@
+package org.example.service;
+
+import com.github.tobato.fastdfs.domain.fdfs.FileInfo;
+import com.github.tobato.fastdfs.domain.fdfs.StorePath;
+import com.github.tobato.fastdfs.domain.proto.storage.DownloadCallback;
+import com.github.tobato.fastdfs.service.AppendFileStorageClient;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class SmallFilePackServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final Map<String, ByteArrayOutputStream> remote = new HashMap<>();
+
+    private AppendFileStorageClient client;
+
+    private SmallFilePackService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        client = mock(AppendFileStorageClient.class);
+        when(client.uploadAppenderFile(anyString(), any(InputStream.class), anyLong(), anyString())).thenAnswer(inv -> {
+            String path = "M00/00/00/c" + remote.size() + ".pack";
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            IOUtils.copy((InputStream) inv.getArgument(1), out);
+            remote.put(path, out);
+            return new StorePath("group1", path);
+        });
+        doAnswer(inv -> IOUtils.copy((InputStream) inv.getArgument(2), remote.get((String) inv.getArgument(1))))
+                .when(client).appendFile(anyString(), anyString(), any(InputStream.class), anyLong());
+        when(client.downloadFile(anyString(), anyString(), anyLong(), anyLong(), any())).thenAnswer(inv -> {
+            byte[] all = remote.get((String) inv.getArgument(1)).toByteArray();
+            int offset = ((Long) inv.getArgument(2)).intValue();
+            int length = ((Long) inv.getArgument(3)).intValue();
+            DownloadCallback<?> callback = inv.getArgument(4);
+            return callback.recv(new ByteArrayInputStream(Arrays.copyOfRange(all, offset, offset + length)));
+        });
+        when(client.queryFileInfo(anyString(), anyString())).thenAnswer(inv -> {
+            ByteArrayOutputStream out = remote.get((String) inv.getArgument(1));
+            return out == null ? null : new FileInfo("127.0.0.1", out.size(), 0, 0);
+        });
+        service = newService();
+    }
+
+    private SmallFilePackService newService() throws Exception {
+        SmallFilePackService s = new SmallFilePackService();
+        ReflectionTestUtils.setField(s, "appendFileStorageClient", client);
+        ReflectionTestUtils.setField(s, "groupName", "group1");
+        ReflectionTestUtils.setField(s, "threshold", 1024);
+        ReflectionTestUtils.setField(s, "containerSize", 64L);
+        ReflectionTestUtils.setField(s, "batchSize", 1 << 20);
+        ReflectionTestUtils.setField(s, "flushMillis", 60_000L);
+        ReflectionTestUtils.setField(s, "indexFile", tempDir.resolve("pack.index").toString());
+        s.init();
+        return s;
+    }
+
+    @Test
+    void batchesSmallFilesIntoOneContainer() throws Exception {
+        service.put("a.svg", bytes("aaaa"));
+        service.put("b.svg", bytes("bbbbbb"));
+        assertArrayEquals(bytes("aaaa"), service.get("a.svg"));
+
+        service.flush();
+
+        verify(client, times(1)).uploadAppenderFile(anyString(), any(InputStream.class), eq(10L), eq("pack"));
+        assertEquals(4, service.getEntry("b.svg").getOffset());
+        assertArrayEquals(bytes("bbbbbb"), service.get("b.svg"));
+    }
+
+    @Test
+    void reloadsIndexAndCompactsDeletedEntries() throws Exception {
+        service.put("a.json", bytes("0123456789012345678901234567890123456789"));
+        service.flush();
+        service.put("b.json", bytes("0123456789012345678901234567890123456789"));
+        service.flush();
+        service.put("c.json", bytes("cccccccccccccccccccccccccccccc"));
+        service.flush();
+        assertEquals(3, remote.size());
+
+        service.delete("a.json");
+        service.destroy();
+
+        SmallFilePackService reloaded = newService();
+        assertFalse(reloaded.contains("a.json"));
+        assertEquals(40, reloaded.getEntry("b.json").getLength());
+
+        long reclaimed = reloaded.compact(0.5);
+
+        assertEquals(40, reclaimed);
+        assertArrayEquals(bytes("0123456789012345678901234567890123456789"), reloaded.get("b.json"));
+        assertArrayEquals(bytes("cccccccccccccccccccccccccccccc"), reloaded.get("c.json"));
+        verify(client).deleteFile("group1", "M00/00/00/c0.pack");
+        reloaded.destroy();
+    }
+
+    @Test
+    void restartResumesCurrentContainerAndKeepsEmptyOnesInJournal() throws Exception {
+        service.put("a.txt", bytes("aaaaaaaaaa"));
+        service.flush();
+        service.delete("a.txt");
+        // 正在追加的容器不压缩，但没有有效数据也要留在日志里
+        assertEquals(0, service.compact(0.5));
+        service.destroy();
+
+        SmallFilePackService reloaded = newService();
+        reloaded.put("b.txt", bytes("bbbbb"));
+        reloaded.flush();
+        verify(client, times(1)).uploadAppenderFile(anyString(), any(InputStream.class), anyLong(), anyString());
+        assertEquals("M00/00/00/c0.pack", reloaded.getEntry("b.txt").getPath());
+        assertEquals(10, reloaded.getEntry("b.txt").getOffset());
+        assertArrayEquals(bytes("bbbbb"), reloaded.get("b.txt"));
+
+        reloaded.put("c.txt", new byte[60]);
+        reloaded.flush();
+        reloaded.delete("b.txt");
+        reloaded.destroy();
+
+        SmallFilePackService again = newService();
+        assertEquals(15, again.compact(0.5));
+        verify(client).deleteFile("group1", "M00/00/00/c0.pack");
+        assertEquals(60, again.get("c.txt").length);
+        again.destroy();
+    }
+
+    @Test
+    void repackingStandaloneKeyDeletesOldFile() throws Exception {
+        when(client.uploadFile(anyString(), any(InputStream.class), anyLong(), anyString()))
+                .thenReturn(new StorePath("group1", "M00/00/00/big.bin"));
+        service.put("a.bin", new byte[2048]);
+        assertFalse(service.getEntry("a.bin").isPacked());
+
+        service.put("a.bin", bytes("small"));
+        service.flush();
+
+        assertTrue(service.getEntry("a.bin").isPacked());
+        verify(client).deleteFile("group1", "M00/00/00/big.bin");
+    }
+
+    @Test
+    void pendingDataIsCopied() throws Exception {
+        byte[] data = bytes("abcd");
+        service.put("a.svg", data);
+        data[0] = 'x';
+        byte[] read = service.get("a.svg");
+        read[1] = 'y';
+
+        assertArrayEquals(bytes("abcd"), service.get("a.svg"));
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,303 @@
+package org.example.util;
+
+import com.github.tobato.fastdfs.domain.conn.FdfsConnectionManager;
+import com.github.tobato.fastdfs.domain.fdfs.FileInfo;
+import com.github.tobato.fastdfs.domain.fdfs.MetaData;
+import com.github.tobato.fastdfs.domain.fdfs.StorageNodeInfo;
+import com.github.tobato.fastdfs.domain.fdfs.StorageState;
+import com.github.tobato.fastdfs.domain.fdfs.StorePath;
+import com.github.tobato.fastdfs.domain.proto.StatusConstants;
+import com.github.tobato.fastdfs.domain.proto.storage.DownloadCallback;
+import com.github.tobato.fastdfs.service.FastFileStorageClient;
+import com.github.tobato.fastdfs.service.TrackerClient;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class FastDfsUtilsTest {
+
+    @TempDir
+    Path tempDir;
+
+    private FastFileStorageClient storageClient;
+
+    private TrackerClient trackerClient;
+
+    private FdfsConnectionManager connectionManager;
+
+    private FastDfsUtils utils;
+
+    @BeforeEach
+    void setUp() {
+        storageClient = mock(FastFileStorageClient.class);
+        trackerClient = mock(TrackerClient.class);
+        connectionManager = mock(FdfsConnectionManager.class);
+        BandwidthShaper shaper = new BandwidthShaper();
+        shaper.init();
+        utils = new FastDfsUtils();
+        ReflectionTestUtils.setField(utils, "storageClient", storageClient);
+        ReflectionTestUtils.setField(utils, "trackerClient", trackerClient);
+        ReflectionTestUtils.setField(utils, "fdfsConnectionManager", connectionManager);
+        ReflectionTestUtils.setField(utils, "bandwidthShaper", shaper);
+        ReflectionTestUtils.setField(utils, "groupName", "group1");
+        ReflectionTestUtils.setField(utils, "readEngine", "storage");
+        ReflectionTestUtils.setField(utils, "metadataConcurrency", 4);
+        ReflectionTestUtils.setField(utils, "metadataCacheSize", 100L);
+        ReflectionTestUtils.setField(utils, "metadataCacheSeconds", 300L);
+        ReflectionTestUtils.setField(utils, "hotCacheMaxBytes", 0L);
+        utils.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        utils.destroy();
+    }
+
+    @Test
+    void batchGetQueriesOnlyUncachedPaths() throws Exception {
+        when(storageClient.getMetadata(eq("group1"), anyString()))
+                .thenAnswer(inv -> meta("name", inv.getArgument(1)));
+        utils.getMetadata("M00/00/00/a");
+
+        Map<String, Set<MetaData>> result = utils.getMetadata(Arrays.asList(
+                "group1/M00/00/00/a", "M00/00/00/b", "group1/M00/00/00/c", "M00/00/00/b"));
+
+        assertEquals(Arrays.asList("group1/M00/00/00/a", "M00/00/00/b", "group1/M00/00/00/c"), new ArrayList<>(result.keySet()));
+        assertEquals("M00/00/00/c", values(result.get("group1/M00/00/00/c")).get("name"));
+        verify(storageClient, times(1)).getMetadata("group1", "M00/00/00/a");
+        verify(storageClient, times(1)).getMetadata("group1", "M00/00/00/b");
+        verify(storageClient, times(1)).getMetadata("group1", "M00/00/00/c");
+    }
+
+    @Test
+    void overwriteReplacesAndMergeUpdatesCachedView() throws Exception {
+        when(storageClient.getMetadata("group1", "M00/00/00/a")).thenReturn(meta("a", "1", "b", "2"));
+        utils.getMetadata("M00/00/00/a");
+
+        utils.mergeMetadata(Collections.singletonMap("group1/M00/00/00/a", meta("b", "3", "c", "4")));
+        assertEquals(map("a", "1", "b", "3", "c", "4"), values(utils.getMetadata("M00/00/00/a")));
+
+        utils.overwriteMetadata(Collections.singletonMap("M00/00/00/a", meta("d", "5")));
+        assertEquals(map("d", "5"), values(utils.getMetadata("M00/00/00/a")));
+
+        verify(storageClient).mergeMetadata(eq("group1"), eq("M00/00/00/a"), anySet());
+        verify(storageClient).overwriteMetadata(eq("group1"), eq("M00/00/00/a"), anySet());
+        verify(storageClient, times(1)).getMetadata("group1", "M00/00/00/a");
+    }
+
+    @Test
+    void concurrentMergesKeepEveryKeyInCache() throws Exception {
+        when(storageClient.getMetadata("group1", "M00/00/00/a")).thenReturn(meta("base", "0"));
+        utils.getMetadata("M00/00/00/a");
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            String key = "k" + i;
+            futures.add(pool.submit(() -> {
+                utils.mergeMetadata(Collections.singletonMap("M00/00/00/a", meta(key, "v")));
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+
+        assertEquals(51, utils.getMetadata("M00/00/00/a").size());
+    }
+
+    @Test
+    void failedWriteInvalidatesCache() throws Exception {
+        when(storageClient.getMetadata("group1", "M00/00/00/a")).thenReturn(meta("a", "1")).thenReturn(meta("a", "2"));
+        utils.getMetadata("M00/00/00/a");
+        doThrow(new RuntimeException("timeout")).when(storageClient).overwriteMetadata(eq("group1"), eq("M00/00/00/a"), anySet());
+
+        assertThrows(Exception.class, () -> utils.overwriteMetadata(Collections.singletonMap("M00/00/00/a", meta("a", "3"))));
+
+        assertEquals(map("a", "2"), values(utils.getMetadata("M00/00/00/a")));
+    }
+
+    @Test
+    void verifiedDownloadFallsBackToActiveReplicas() throws Exception {
+        byte[] data = "replicated content".getBytes(StandardCharsets.UTF_8);
+        byte[] corrupted = data.clone();
+        corrupted[0] ^= 1;
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        ReflectionTestUtils.setField(utils, "verifyCrc", true);
+        when(storageClient.queryFileInfo("group1", "M00/00/00/r"))
+                .thenReturn(new FileInfo("10.0.0.1", data.length, 0, (int) crc.getValue()));
+        when(trackerClient.getFetchStorage("group1", "M00/00/00/r")).thenReturn(new StorageNodeInfo("10.0.0.1", 23000));
+        when(trackerClient.listStorages("group1")).thenReturn(Arrays.asList(
+                storage("10.0.0.1", StatusConstants.FDFS_STORAGE_STATUS_ACTIVE),
+                storage("10.0.0.2", StatusConstants.FDFS_STORAGE_STATUS_OFFLINE),
+                storage("10.0.0.3", StatusConstants.FDFS_STORAGE_STATUS_ACTIVE)));
+        Map<String, byte[]> replicas = new HashMap<>();
+        replicas.put("10.0.0.1", corrupted);
+        replicas.put("10.0.0.3", data);
+        when(connectionManager.executeFdfsCmd(any(InetSocketAddress.class), any())).thenAnswer(inv -> {
+            InetSocketAddress node = inv.getArgument(0);
+            Object response = ReflectionTestUtils.getField(inv.<Object>getArgument(1), "response");
+            DownloadCallback<?> callback = (DownloadCallback<?>) ReflectionTestUtils.getField(response, "callback");
+            return callback.recv(new ByteArrayInputStream(replicas.get(node.getHostString())));
+        });
+        File target = tempDir.resolve("r.bin").toFile();
+
+        assertTrue(utils.downloadToLocal(target, "group1/M00/00/00/r"));
+
+        assertArrayEquals(data, Files.readAllBytes(target.toPath()));
+        verify(connectionManager).executeFdfsCmd(eq(new InetSocketAddress("10.0.0.1", 23000)), any());
+        verify(connectionManager, never()).executeFdfsCmd(eq(new InetSocketAddress("10.0.0.2", 23000)), any());
+        verify(connectionManager).executeFdfsCmd(eq(new InetSocketAddress("10.0.0.3", 23000)), any());
+
+        replicas.put("10.0.0.3", corrupted);
+        File failed = tempDir.resolve("failed.bin").toFile();
+        assertFalse(utils.downloadToLocal(failed, "M00/00/00/r"));
+        assertFalse(failed.exists());
+    }
+
+    @Test
+    void emptyRemoteFileIsNotDownloaded() {
+        when(storageClient.queryFileInfo("group1", "M00/00/00/empty")).thenReturn(new FileInfo("10.0.0.1", 0, 0, 0));
+
+        assertFalse(utils.downloadToLocal(tempDir.resolve("empty.bin").toFile(), "M00/00/00/empty"));
+        verify(storageClient, never()).downloadFile(anyString(), anyString(), any());
+    }
+
+    @Test
+    void deleteEvictsHotCacheForConfiguredGroup() throws Exception {
+        utils.destroy();
+        ReflectionTestUtils.setField(utils, "groupName", "group2");
+        ReflectionTestUtils.setField(utils, "hotCacheMaxBytes", 1L << 20);
+        ReflectionTestUtils.setField(utils, "hotCacheMaxObjectBytes", 1024L);
+        ReflectionTestUtils.setField(utils, "hotCacheMinFrequency", 1);
+        ReflectionTestUtils.setField(utils, "hotCacheTtlSeconds", 600L);
+        utils.init();
+        when(storageClient.queryFileInfo("group2", "M00/00/00/h")).thenReturn(new FileInfo("10.0.0.1", 2, 0, 0));
+        when(storageClient.downloadFile(eq("group2"), eq("M00/00/00/h"), any())).thenReturn(new byte[]{1, 2});
+
+        utils.readFileToBytes("group2/M00/00/00/h");
+        utils.readFileToBytes("M00/00/00/h");
+        verify(storageClient, times(1)).downloadFile(eq("group2"), eq("M00/00/00/h"), any());
+
+        assertTrue(utils.delFile("group2/M00/00/00/h"));
+        when(storageClient.queryFileInfo("group2", "M00/00/00/h")).thenReturn(null);
+
+        assertNull(utils.readFileToBytes("M00/00/00/h"));
+        verify(storageClient, times(1)).downloadFile(eq("group2"), eq("M00/00/00/h"), any());
+    }
+
+    @Test
+    void deleteDuringLoadKeepsObjectOutOfHotCache() throws Exception {
+        utils.destroy();
+        ReflectionTestUtils.setField(utils, "hotCacheMaxBytes", 1L << 20);
+        ReflectionTestUtils.setField(utils, "hotCacheMaxObjectBytes", 1024L);
+        ReflectionTestUtils.setField(utils, "hotCacheMinFrequency", 1);
+        ReflectionTestUtils.setField(utils, "hotCacheTtlSeconds", 600L);
+        utils.init();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch deleted = new CountDownLatch(1);
+        when(storageClient.queryFileInfo("group1", "M00/00/00/d")).thenReturn(new FileInfo("10.0.0.1", 2, 0, 0));
+        when(storageClient.downloadFile(eq("group1"), eq("M00/00/00/d"), any())).thenAnswer(inv -> {
+            loading.countDown();
+            assertTrue(deleted.await(5, TimeUnit.SECONDS));
+            return new byte[]{1, 2};
+        });
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<byte[]> read = pool.submit(() -> utils.readFileToBytes("M00/00/00/d"));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            assertTrue(utils.delFile("group1/M00/00/00/d"));
+            when(storageClient.queryFileInfo("group1", "M00/00/00/d")).thenReturn(null);
+            deleted.countDown();
+            assertArrayEquals(new byte[]{1, 2}, read.get(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+
+        // 读取在删除之后才结束，旧内容不能留在缓存里
+        assertNull(utils.readFileToBytes("M00/00/00/d"));
+        verify(storageClient, times(1)).downloadFile(eq("group1"), eq("M00/00/00/d"), any());
+    }
+
+    @Test
+    void jfrEventsUseConfiguredGroupAndStrippedPath() throws Exception {
+        ReflectionTestUtils.setField(utils, "groupName", "group2");
+        when(storageClient.queryFileInfo("group2", "M00/00/00/j")).thenReturn(new FileInfo("10.0.0.1", 2, 0, 0));
+        when(storageClient.downloadFile(eq("group2"), eq("M00/00/00/j"), any())).thenReturn(new byte[]{1, 2});
+        when(storageClient.uploadFile(any(), anyLong(), anyString(), isNull())).thenReturn(new StorePath("group2", "M00/00/00/j"));
+        Path dump = tempDir.resolve("ops.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("org.example.FdfsOperation").withoutThreshold();
+            recording.start();
+            assertEquals("group2/M00/00/00/j", utils.writeInputStreamToFile(new ByteArrayInputStream(new byte[2]), 2, "j.bin"));
+            utils.readFileToBytes("group2/M00/00/00/j");
+            assertTrue(utils.delFile("group2/M00/00/00/j"));
+            recording.stop();
+            recording.dump(dump);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump).stream()
+                .filter(e -> e.getEventType().getName().equals("org.example.FdfsOperation"))
+                .filter(e -> !e.getString("operation").equals("query"))
+                .collect(Collectors.toList());
+        assertEquals(Arrays.asList("upload", "read", "delete"),
+                events.stream().map(e -> e.getString("operation")).collect(Collectors.toList()));
+        for (RecordedEvent event : events) {
+            assertEquals("group2", event.getString("group"));
+            assertEquals("M00/00/00/j", event.getString("path"));
+        }
+    }
+
+    private static StorageState storage(String ip, byte status) {
+        StorageState state = new StorageState();
+        state.setIpAddr(ip);
+        state.setStoragePort(23000);
+        state.setStatus(status);
+        return state;
+    }
+
+    private static Set<MetaData> meta(String... pairs) {
+        Set<MetaData> set = new HashSet<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            set.add(new MetaData(pairs[i], pairs[i + 1]));
+        }
+        return set;
+    }
+
+    private static Map<String, String> values(Set<MetaData> metadata) {
+        return metadata.stream().collect(Collectors.toMap(MetaData::getName, MetaData::getValue));
+    }
+
+    private static Map<String, String> map(String... pairs) {
+        Map<String, String> map = new HashMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            map.put(pairs[i], pairs[i + 1]);
+        }
+        return map;
+    }
+}
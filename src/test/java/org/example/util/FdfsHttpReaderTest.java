@@ -0,0 +1,115 @@
+package org.example.util;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FdfsHttpReaderTest {
+
+    private static final byte[] CONTENT = "0123456789abcdefghij".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path tempDir;
+
+    private HttpServer server;
+
+    private FdfsHttpReader reader;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        // 支持Range
+        server.createContext("/group1/ranged", exchange -> {
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            if (range == null) {
+                send(exchange, 200, CONTENT);
+                return;
+            }
+            String[] bounds = range.substring("bytes=".length()).split("-");
+            int from = Integer.parseInt(bounds[0]);
+            int to = Math.min(Integer.parseInt(bounds[1]), CONTENT.length - 1);
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + from + "-" + to + "/" + CONTENT.length);
+            send(exchange, 206, Arrays.copyOfRange(CONTENT, from, to + 1));
+        });
+        // 忽略Range，始终返回整个文件
+        server.createContext("/group1/plain", exchange -> send(exchange, 200, CONTENT));
+        server.createContext("/group1/broken", exchange -> send(exchange, 500, new byte[0]));
+        server.createContext("/group1/missing", exchange -> send(exchange, 404, new byte[0]));
+        server.start();
+
+        reader = new FdfsHttpReader();
+        ReflectionTestUtils.setField(reader, "serverUrl", "http://127.0.0.1:" + server.getAddress().getPort());
+        ReflectionTestUtils.setField(reader, "maxTotal", 4);
+        ReflectionTestUtils.setField(reader, "maxPerRoute", 4);
+        ReflectionTestUtils.setField(reader, "connectTimeout", 1000);
+        ReflectionTestUtils.setField(reader, "soTimeout", 1000);
+        ReflectionTestUtils.setField(reader, "idleSeconds", 30);
+        reader.init();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        reader.destroy();
+        server.stop(0);
+    }
+
+    @Test
+    void readsPartialContent() throws IOException {
+        assertArrayEquals(bytes("456"), reader.readRange("group1", "ranged", 4, 3));
+        assertArrayEquals(bytes("hij"), reader.readRange("group1", "ranged", 17, 10));
+    }
+
+    @Test
+    void slicesFullBodyWhenRangeIgnored() throws IOException {
+        assertArrayEquals(bytes("456"), reader.readRange("group1", "plain", 4, 3));
+        assertArrayEquals(bytes("ij"), reader.readRange("group1", "plain", 18, 5));
+        assertArrayEquals(CONTENT, reader.readBytes("group1", "plain"));
+    }
+
+    @Test
+    void missingReturnsNullAndErrorsThrow() throws IOException {
+        assertNull(reader.readBytes("group1", "missing"));
+        assertNull(reader.readRange("group1", "missing", 0, 4));
+        assertFalse(reader.download("group1", "missing", tempDir.resolve("m.bin").toFile()));
+
+        assertThrows(IOException.class, () -> reader.readBytes("group1", "broken"));
+        assertThrows(IOException.class, () -> reader.readRange("group1", "broken", 0, 4));
+        assertThrows(IOException.class, () -> reader.download("group1", "broken", tempDir.resolve("b.bin").toFile()));
+    }
+
+    @Test
+    void downloadsToFile() throws IOException {
+        File target = tempDir.resolve("sub/a.bin").toFile();
+
+        assertTrue(reader.download("group1", "plain", target));
+
+        assertArrayEquals(CONTENT, Files.readAllBytes(target.toPath()));
+        assertFalse(new File(target.getPath() + ".part").exists());
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
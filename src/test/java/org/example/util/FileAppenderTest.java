@@ -0,0 +1,83 @@
+package org.example.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileAppenderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void concurrentWritersKeepEveryLineIntact() throws Exception {
+        String path = tempDir.resolve("audit.log").toString();
+        FileAppender appender = FileAppender.of(path, 256, 128, 10, FileAppender.FsyncPolicy.BATCH, 0);
+        int threads = 8;
+        int lines = 500;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            pool.execute(() -> {
+                try {
+                    for (int i = 0; i < lines; i++) {
+                        appender.append("writer-" + id + " line-" + i + "\n");
+                    }
+                } catch (Exception e) {
+                    fail(e);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        pool.shutdown();
+        appender.close();
+
+        List<String> written = Files.readAllLines(tempDir.resolve("audit.log"));
+        assertEquals(threads * lines, written.size());
+        assertTrue(written.stream().allMatch(l -> l.matches("writer-\\d line-\\d+")));
+    }
+
+    @Test
+    void sharesAppenderPerPathAndWritesLargeRecordsDirectly() throws Exception {
+        String path = tempDir.resolve("big.log").toString();
+        FileAppender appender = FileAppender.of(path, 16, 8, 1000, FileAppender.FsyncPolicy.NONE, 0);
+        assertSame(appender, FileAppender.of(path));
+
+        appender.append("small\n");
+        appender.append("a record larger than the ring buffer\n");
+        appender.flush();
+
+        assertEquals("small\na record larger than the ring buffer\n", new String(Files.readAllBytes(tempDir.resolve("big.log"))));
+        appender.close();
+        assertThrows(Exception.class, () -> appender.append("closed\n"));
+    }
+
+    @Test
+    void intervalPolicySyncsLastBatchWithoutFurtherWrites() throws Exception {
+        String path = tempDir.resolve("interval.log").toString();
+        FileAppender appender = FileAppender.of(path, 1024, 512, 1000, FileAppender.FsyncPolicy.INTERVAL, 500);
+
+        appender.append("tail\n");
+        appender.flush();
+        assertTrue(appender.isDirty());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (appender.isDirty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse(appender.isDirty());
+        appender.close();
+    }
+}
@@ -0,0 +1,51 @@
+package org.example.util;
+
+import com.github.tobato.fastdfs.domain.fdfs.FileInfo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileDownloadCallbackTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void verifiesSizeAndCrcWhileStreaming() throws Exception {
+        byte[] data = "recording payload".getBytes();
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        File target = tempDir.resolve("a/ok.bin").toFile();
+
+        FileInfo info = new FileInfo("127.0.0.1", data.length, 0, (int) crc.getValue());
+        FileDownloadCallback callback = new FileDownloadCallback(target, info);
+        assertEquals(data.length, callback.recv(new ByteArrayInputStream(data)));
+        assertEquals(crc.getValue(), callback.getCrc32());
+        assertArrayEquals(data, Files.readAllBytes(target.toPath()));
+    }
+
+    @Test
+    void discardsCorruptedContent() {
+        byte[] data = "recording payload".getBytes();
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        File target = tempDir.resolve("bad.bin").toFile();
+        byte[] corrupted = data.clone();
+        corrupted[3] ^= 1;
+
+        FileInfo info = new FileInfo("127.0.0.1", data.length, 0, (int) crc.getValue());
+        assertThrows(FileDownloadCallback.ChecksumException.class,
+                () -> new FileDownloadCallback(target, info).recv(new ByteArrayInputStream(corrupted)));
+        assertThrows(FileDownloadCallback.ChecksumException.class,
+                () -> new FileDownloadCallback(target, info).recv(new ByteArrayInputStream(data, 0, 5)));
+        assertFalse(target.exists());
+        assertFalse(new File(target.getPath() + ".part").exists());
+    }
+}
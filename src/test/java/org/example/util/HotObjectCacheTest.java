@@ -0,0 +1,64 @@
+package org.example.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HotObjectCacheTest {
+
+    @Test
+    void admitsOnlySmallFrequentObjects() {
+        HotObjectCache cache = new HotObjectCache(1024, 100, 2, 60);
+        byte[] logo = new byte[50];
+
+        assertNull(cache.get("group1/logo"));
+        assertFalse(cache.offer("group1/logo", logo));
+        assertNull(cache.get("group1/logo"));
+        assertTrue(cache.offer("group1/logo", logo));
+        assertArrayEquals(logo, cache.get("group1/logo"));
+
+        cache.get("group1/big");
+        cache.get("group1/big");
+        assertFalse(cache.offer("group1/big", new byte[200]));
+        assertEquals(1, cache.getRejectedSize());
+        assertEquals(1, cache.getRejectedFrequency());
+
+        cache.invalidate("group1/logo");
+        assertNull(cache.get("group1/logo"));
+        assertEquals(1, cache.getStats().hitCount());
+    }
+
+    @Test
+    void oneOffReadsDoNotEvictHotEntries() {
+        HotObjectCache cache = new HotObjectCache(4000, 100, 2, 60);
+        for (int i = 0; i < 10; i++) {
+            cache.get("hot" + i);
+            cache.get("hot" + i);
+            assertTrue(cache.offer("hot" + i, new byte[100]));
+        }
+        for (int i = 0; i < 1000; i++) {
+            String key = "scan" + i;
+            assertNull(cache.get(key));
+            cache.offer(key, new byte[100]);
+        }
+        assertEquals(1000, cache.getRejectedFrequency());
+        for (int i = 0; i < 10; i++) {
+            assertNotNull(cache.get("hot" + i));
+        }
+    }
+
+    @Test
+    void offerAfterInvalidateIsRejected() {
+        HotObjectCache cache = new HotObjectCache(1024, 100, 1, 60);
+        cache.get("group1/a");
+        long loading = cache.generation();
+        cache.invalidate("group1/a");
+        assertFalse(cache.offer("group1/a", new byte[10], loading));
+        assertNull(cache.get("group1/a"));
+
+        long later = cache.generation();
+        assertTrue(cache.offer("group1/a", new byte[10], later));
+        cache.invalidateAll();
+        assertFalse(cache.offer("group1/b", new byte[10], later));
+    }
+}
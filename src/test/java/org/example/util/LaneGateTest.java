@@ -0,0 +1,108 @@
+package org.example.util;
+
+import com.github.tobato.fastdfs.exception.FdfsUnavailableException;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LaneGateTest {
+
+    private static final InetSocketAddress STORAGE = InetSocketAddress.createUnresolved("storage1", 23000);
+
+    private LaneGate newGate(int capacity, int reserved, long waitMillis) {
+        LaneGate gate = new LaneGate();
+        ReflectionTestUtils.setField(gate, "capacity", capacity);
+        ReflectionTestUtils.setField(gate, "interactiveReserved", reserved);
+        ReflectionTestUtils.setField(gate, "interactiveMaxWaitMillis", waitMillis);
+        ReflectionTestUtils.setField(gate, "bulkMaxWaitMillis", waitMillis);
+        return gate;
+    }
+
+    @Test
+    void bulkCannotUseReservedConnections() {
+        LaneGate gate = newGate(3, 1, 50);
+        gate.acquire(TrafficLane.BULK, STORAGE);
+        gate.acquire(TrafficLane.BULK, STORAGE);
+        assertThrows(FdfsUnavailableException.class, () -> gate.acquire(TrafficLane.BULK, STORAGE));
+        gate.acquire(TrafficLane.INTERACTIVE, STORAGE);
+        assertThrows(FdfsUnavailableException.class, () -> gate.acquire(TrafficLane.INTERACTIVE, STORAGE));
+        assertEquals(2, gate.getStats(TrafficLane.BULK).getInUse());
+        assertEquals(1, gate.getStats(TrafficLane.BULK).getTimeouts());
+        assertEquals(1, gate.getStats(TrafficLane.INTERACTIVE).getTimeouts());
+    }
+
+    @Test
+    void releasedConnectionGoesToWaitingInteractiveFirst() throws Exception {
+        LaneGate gate = newGate(2, 0, 5000);
+        gate.acquire(TrafficLane.BULK, STORAGE);
+        gate.acquire(TrafficLane.BULK, STORAGE);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Long> bulk = executor.submit(() -> gate.acquire(TrafficLane.BULK, STORAGE));
+            while (gate.getStats(TrafficLane.BULK).getWaiting() < 1) {
+                Thread.sleep(5);
+            }
+            Future<Long> interactive = executor.submit(() -> gate.acquire(TrafficLane.INTERACTIVE, STORAGE));
+            while (gate.getStats(TrafficLane.INTERACTIVE).getWaiting() < 1) {
+                Thread.sleep(5);
+            }
+            gate.release(TrafficLane.BULK, STORAGE);
+            interactive.get(5, TimeUnit.SECONDS);
+            assertThrows(TimeoutException.class, () -> bulk.get(100, TimeUnit.MILLISECONDS));
+
+            gate.release(TrafficLane.INTERACTIVE, STORAGE);
+            bulk.get(5, TimeUnit.SECONDS);
+            assertEquals(2, gate.getStats(TrafficLane.BULK).getInUse());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void allBulkWaitersResumeWhenInteractiveQueueDrains() throws Exception {
+        LaneGate gate = newGate(3, 0, 5000);
+        for (int i = 0; i < 3; i++) {
+            gate.acquire(TrafficLane.INTERACTIVE, STORAGE);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<Long>> bulk = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                bulk.add(executor.submit(() -> gate.acquire(TrafficLane.BULK, STORAGE)));
+            }
+            while (gate.getStats(TrafficLane.BULK).getWaiting() < 2) {
+                Thread.sleep(5);
+            }
+            Future<Long> interactive = executor.submit(() -> gate.acquire(TrafficLane.INTERACTIVE, STORAGE));
+            while (gate.getStats(TrafficLane.INTERACTIVE).getWaiting() < 1) {
+                Thread.sleep(5);
+            }
+            // 持有锁一次释放全部名额，交互请求拿到一个后空出两个，两个批量任务都要被唤醒
+            Map<?, ?> gates = (Map<?, ?>) ReflectionTestUtils.getField(gate, "gates");
+            ReentrantLock lock = (ReentrantLock) ReflectionTestUtils.getField(gates.get(STORAGE), "lock");
+            lock.lock();
+            try {
+                for (int i = 0; i < 3; i++) {
+                    gate.release(TrafficLane.INTERACTIVE, STORAGE);
+                }
+            } finally {
+                lock.unlock();
+            }
+            interactive.get(5, TimeUnit.SECONDS);
+            for (Future<Long> f : bulk) {
+                f.get(1, TimeUnit.SECONDS);
+            }
+            assertEquals(2, gate.getStats(TrafficLane.BULK).getInUse());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
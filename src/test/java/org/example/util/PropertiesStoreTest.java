@@ -0,0 +1,111 @@
+package org.example.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PropertiesStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void batchesUpdatesIntoOneAtomicWrite() throws Exception {
+        Path file = tempDir.resolve("app.properties");
+        PropertiesStore store = PropertiesStore.of(file.toString(), 60_000);
+        Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            values.put("key" + i, "value" + i);
+        }
+        store.setAll(values);
+        store.set("key0", "changed");
+
+        assertFalse(Files.exists(file));
+        assertEquals("changed", store.get("key0"));
+
+        store.flush();
+
+        Properties written = load(file);
+        assertEquals(100, written.size());
+        assertEquals("changed", written.getProperty("key0"));
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    void reloadsExternalChangesAndKeepsUnsavedValues() throws Exception {
+        Path file = tempDir.resolve("ext.properties");
+        Properties initial = new Properties();
+        initial.setProperty("a", "1");
+        store(file, initial);
+        PropertiesStore store = PropertiesStore.of(file.toString(), 60_000);
+        assertEquals("1", store.get("a"));
+        store.set("local", "x");
+
+        Properties external = new Properties();
+        external.setProperty("a", "2");
+        store(file, external);
+
+        long deadline = System.currentTimeMillis() + 20_000;
+        while (!"2".equals(store.get("a")) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals("2", store.get("a"));
+        assertEquals("x", store.get("local"));
+    }
+
+    @Test
+    void savePropertiesWritesBeforeReturning() throws Exception {
+        Path file = tempDir.resolve("sync.properties");
+        store(file, new Properties());
+
+        FileUtil.saveProperties(file.toString(), "version", "3");
+
+        assertEquals("3", load(file).getProperty("version"));
+
+        Path missing = tempDir.resolve("missing.properties");
+        FileUtil.saveProperties(missing.toString(), "version", "3");
+        assertFalse(Files.exists(missing));
+    }
+
+    @Test
+    void debouncedSaveWritesLater() throws Exception {
+        Path file = tempDir.resolve("later.properties");
+
+        FileUtil.savePropertiesDebounced(file.toString(), "a", "1");
+        FileUtil.savePropertiesDebounced(file.toString(), "b", "2");
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!Files.exists(file) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        Properties written = load(file);
+        assertEquals("1", written.getProperty("a"));
+        assertEquals("2", written.getProperty("b"));
+    }
+
+    private static Properties load(Path file) throws Exception {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        }
+        return properties;
+    }
+
+    private static void store(Path file, Properties properties) throws Exception {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            properties.store(out, null);
+        }
+    }
+}
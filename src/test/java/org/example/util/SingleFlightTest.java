@@ -0,0 +1,80 @@
+package org.example.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    @Test
+    void concurrentCallersShareOneLoad() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            results.add(executor.submit(() -> flight.execute("group1/a", () -> {
+                loads.incrementAndGet();
+                started.countDown();
+                release.await();
+                return "content";
+            })));
+            started.await();
+            for (int i = 0; i < 7; i++) {
+                results.add(executor.submit(() -> flight.execute("group1/a", () -> {
+                    loads.incrementAndGet();
+                    return "other";
+                })));
+            }
+            while (flight.getShared() < 7) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+            for (Future<String> result : results) {
+                assertEquals("content", result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loads.get());
+            assertEquals(0, flight.getInFlight());
+
+            // 结束后不再共享
+            assertEquals("again", flight.execute("group1/a", () -> "again"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void failurePropagatesToAllCallers() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> leader = executor.submit(() -> flight.execute("k", () -> {
+                started.countDown();
+                release.await();
+                throw new IllegalStateException("storage down");
+            }));
+            started.await();
+            Future<String> follower = executor.submit(() -> flight.execute("k", () -> "unused"));
+            while (flight.getShared() < 1) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+            for (Future<String> f : Arrays.asList(leader, follower)) {
+                ExecutionException e = assertThrows(ExecutionException.class, () -> f.get(5, TimeUnit.SECONDS));
+                assertEquals("storage down", e.getCause().getMessage());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.example.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private final AtomicLong parked = new AtomicLong();
+
+    private TokenBucket bucket(long bytesPerSecond) {
+        return new TokenBucket(bytesPerSecond, clock::get, nanos -> {
+            parked.addAndGet(nanos);
+            clock.addAndGet(nanos);
+        });
+    }
+
+    @Test
+    void limitsThroughputAndCanBeAdjusted() {
+        TokenBucket bucket = bucket(1024 * 1024);
+        for (int i = 0; i < 32; i++) {
+            bucket.acquire(16 * 1024);
+        }
+        // 512KB按1MB/s正好500ms，初始桶为空
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(500), parked.get());
+
+        bucket.setBytesPerSecond(0);
+        assertTrue(bucket.isUnlimited());
+        assertEquals(0, bucket.reserve(Long.MAX_VALUE / 2));
+    }
+
+    @Test
+    void spreadsWaitInsteadOfBursting() {
+        TokenBucket bucket = bucket(100 * 1024);
+        assertEquals(0, bucket.reserve(0));
+        // 一次透支只等待对应的时间，而不是攒满后一次放行
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(500), bucket.reserve(50 * 1024));
+    }
+
+    @Test
+    void idleTimeOnlyBanksOneBurst() {
+        TokenBucket bucket = bucket(1000);
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        // 空闲10秒也只攒下100ms的令牌
+        assertEquals(0, bucket.reserve(100));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), bucket.reserve(100));
+    }
+
+    @Test
+    void rateChangeAppliesToLaterReservations() {
+        TokenBucket bucket = bucket(1000);
+        assertEquals(TimeUnit.SECONDS.toNanos(1), bucket.reserve(1000));
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        bucket.setBytesPerSecond(2000);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(500), bucket.reserve(1000));
+    }
+}